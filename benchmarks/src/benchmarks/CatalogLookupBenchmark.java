@@ -0,0 +1,82 @@
+package benchmarks;
+
+import buildings.Building;
+import buildings.BuildingManager;
+import buildings.ConferenceRoom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up buildings by name and rooms by name at several catalog sizes. Names are looked up in the mixed case
+ * clients send them in, and in random order, so lookups do not stay in the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dbooking.transport=inmemory", "-Dbooking.persistence.enabled=false"})
+public class CatalogLookupBenchmark {
+    private static final int NAMES = 4096;
+
+    @Param({"10", "1000", "100000"})
+    public int buildingCount;
+
+    @Param({"16"})
+    public int roomsPerBuilding;
+
+    private String[] buildingNames;
+    private String[] roomNames;
+    private Building[] buildings;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        for (int id = 1; id <= buildingCount; id++) {
+            BuildingManager.restoreBuilding(id, roomsPerBuilding);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        buildingNames = new String[NAMES];
+        roomNames = new String[NAMES];
+        buildings = new Building[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            int buildingId = 1 + random.nextInt(buildingCount);
+            buildingNames[i] = "building-" + buildingId;
+            roomNames[i] = "room-" + (1 + random.nextInt(roomsPerBuilding));
+            buildings[i] = BuildingManager.getBuildingById(buildingId);
+        }
+    }
+
+    @Benchmark
+    public Building buildingByName() {
+        return BuildingManager.getBuildingByName(buildingNames[nextIndex()]);
+    }
+
+    @Benchmark
+    public ConferenceRoom roomByName() {
+        int i = nextIndex();
+        return buildings[i].getRoom(roomNames[i]);
+    }
+
+    @Benchmark
+    public ConferenceRoom buildingAndRoomByName() {
+        int i = nextIndex();
+        return BuildingManager.getBuildingByName(buildingNames[i]).getRoom(roomNames[i]);
+    }
+
+    private int nextIndex() {
+        return next++ & (NAMES - 1);
+    }
+}
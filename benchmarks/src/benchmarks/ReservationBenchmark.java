@@ -0,0 +1,89 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reservations.Reservation;
+import reservations.ReservationManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of creating, cancelling and querying reservations with several threads at once. Every thread creates
+ * and cancels reservations of its own user in a few shared buildings, so threads contend on the indexes of the
+ * buildings and rooms but the number of reservations stays the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Dbooking.transport=inmemory", "-Dbooking.persistence.enabled=false"})
+public class ReservationBenchmark {
+    private static final int BUILDINGS = 8;
+    private static final int ROOMS = 16;
+
+    @Param({"10", "1000"})
+    public int reservationsPerUser;
+
+    private String[] reservationNumbers;
+
+    @Setup
+    public void setUp() {
+        reservationNumbers = new String[reservationsPerUser];
+        for (int i = 0; i < reservationsPerUser; i++) {
+            int buildingId = 1 + i % BUILDINGS;
+            reservationNumbers[i] = ReservationManager.createReservation("frequent-user", buildingId,
+                    "Building-" + buildingId, "Room-" + (1 + i % ROOMS), i * 1000L, i * 1000L + 500).getReservationNumber();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private static final AtomicInteger threads = new AtomicInteger();
+
+        String username;
+        int next;
+
+        @Setup
+        public void setUp() {
+            username = "user-" + threads.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public boolean createAndCancel(ThreadState state) {
+        int i = state.next++;
+        int buildingId = 1 + i % BUILDINGS;
+        Reservation reservation = ReservationManager.createReservation(state.username, buildingId,
+                "Building-" + buildingId, "Room-" + (1 + i % ROOMS), i * 1000L, i * 1000L + 500);
+        return ReservationManager.cancelReservation(reservation);
+    }
+
+    @Benchmark
+    public List<Reservation> reservationsByUser() {
+        return ReservationManager.getReservationsByUser("frequent-user");
+    }
+
+    @Benchmark
+    public List<Reservation> reservationsByRoom() {
+        return ReservationManager.getReservationsByRoom("building-1", "room-1");
+    }
+
+    @Benchmark
+    public Reservation reservationByNumber(ThreadState state) {
+        return ReservationManager.getReservationByNumber(reservationNumbers[state.next++ % reservationNumbers.length]);
+    }
+}
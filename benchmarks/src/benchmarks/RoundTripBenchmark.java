@@ -0,0 +1,60 @@
+package benchmarks;
+
+import buildings.BuildingManager;
+import clients.Client;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import props.Message;
+import props.MessageType;
+import rentalAgents.RentalAgent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of whole requests of a client, through the RentalAgent and the building and back, over the in-memory
+ * transport. Every reservation is cancelled again, so the rooms never fill up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dbooking.transport=inmemory", "-Dbooking.persistence.enabled=false"})
+public class RoundTripBenchmark {
+    private static final int ROOMS = 32;
+
+    private Client client;
+    private long nextSlot;
+
+    @Setup
+    public void setUp() throws Exception {
+        BuildingManager.restoreBuilding(1, ROOMS);
+        RentalAgent agent = new RentalAgent();
+        agent.startListening();
+        client = new Client("benchmark");
+        client.startListening();
+    }
+
+    @Benchmark
+    public Message reserveAndCancel() {
+        long slot = nextSlot++;
+        Message reply = client.makeReservation("building-1", "room-" + (1 + slot % ROOMS), slot * 1000, slot * 1000 + 500).join();
+        if (reply.getType() != MessageType.RESERVATION_NUMBER) {
+            throw new IllegalStateException("Reservation failed: " + reply);
+        }
+        return client.cancelReservation((String) reply.getPayload()).join();
+    }
+
+    @Benchmark
+    public Message listBuildings() {
+        return client.requestListOfBuildings().join();
+    }
+}
@@ -0,0 +1,99 @@
+package benchmarks;
+
+import props.AvailabilityDelta;
+import props.AvailabilityPage;
+import props.AvailabilityQuery;
+import props.AvailabilityState;
+import props.BuildingAvailability;
+import props.Message;
+import props.MessageType;
+import props.ReservationBatch;
+import props.ReservationBatchResult;
+import props.ReservationRequest;
+import props.ReservationResult;
+import props.RoomStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a typical message of each {@link MessageType}, with the correlation ID and reply-to address a request or
+ * reply carries, for the codec benchmarks.
+ */
+class SampleMessages {
+    private static final int LIST_SIZE = 20;
+
+    static Message of(MessageType type) {
+        Message message = new Message(type, payloadOf(type));
+        message.setCorrelationId("k3n5x0q2b7a1-1024");
+        message.setReplyTo("CLIENT_REPLY_QUEUE.alice.1y2kq9dn3f");
+        return message;
+    }
+
+    private static Object payloadOf(MessageType type) {
+        return switch (type.getPayloadSchema()) {
+            case EMPTY -> null;
+            case TEXT -> "The reservation is confirmed for Building-12 Room-7";
+            case NUMBER -> 25;
+            case TEXT_LIST -> buildingList();
+            case RESERVATION_REQUEST -> request(1);
+            case RESERVATION_BATCH -> new ReservationBatch("alice", true, requests());
+            case RESERVATION_BATCH_RESULT -> batchResult();
+            case AVAILABILITY_STATE -> state();
+            case AVAILABILITY_DELTA -> new AvailabilityDelta("1ihn5y40a65c2", 123456, 12, 7, true);
+            case AVAILABILITY_QUERY -> new AvailabilityQuery(List.of("Building-1", "Building-2"), null, true, 2, 100, "2s1rm8ub");
+            case AVAILABILITY_PAGE -> page();
+        };
+    }
+
+    private static ReservationRequest request(int room) {
+        return new ReservationRequest("alice", "Building-12", "Room-" + room, "0A8QXKDPG0020",
+                1792137600000L, 1792144800000L);
+    }
+
+    private static List<ReservationRequest> requests() {
+        List<ReservationRequest> requests = new ArrayList<>(LIST_SIZE);
+        for (int i = 1; i <= LIST_SIZE; i++) {
+            requests.add(request(i));
+        }
+        return requests;
+    }
+
+    private static ReservationBatchResult batchResult() {
+        List<ReservationResult> results = new ArrayList<>(LIST_SIZE);
+        for (ReservationRequest request : requests()) {
+            results.add(new ReservationResult(request, MessageType.CONFIRM_RESERVATION,
+                    "The reservation is confirmed for Building-12 " + request.getRoomName()));
+        }
+        return new ReservationBatchResult(results);
+    }
+
+    private static List<String> buildingList() {
+        List<String> buildings = new ArrayList<>(LIST_SIZE);
+        for (int i = 1; i <= LIST_SIZE; i++) {
+            buildings.add("Building: Building-" + i + " (3 of 4 available)\n    Room-1 - Booked\n    Room-2 - Available"
+                    + "\n    Room-3 - Available\n    Room-4 - Available");
+        }
+        return buildings;
+    }
+
+    private static AvailabilityState state() {
+        List<BuildingAvailability> buildings = new ArrayList<>(LIST_SIZE);
+        for (int i = 1; i <= LIST_SIZE; i++) {
+            List<String> roomNames = new ArrayList<>(LIST_SIZE);
+            for (int room = 1; room <= LIST_SIZE; room++) {
+                roomNames.add("Room-" + room);
+            }
+            buildings.add(new BuildingAvailability(i, "Building-" + i, roomNames, new long[]{0x5L}));
+        }
+        return new AvailabilityState("1ihn5y40a65c2", 123456, buildings);
+    }
+
+    private static AvailabilityPage page() {
+        List<RoomStatus> rooms = new ArrayList<>(LIST_SIZE);
+        for (int i = 1; i <= LIST_SIZE; i++) {
+            rooms.add(new RoomStatus("Building-12", "Room-" + i, i % 3 == 0));
+        }
+        return new AvailabilityPage(rooms, "2s1rm8ub");
+    }
+}
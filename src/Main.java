@@ -1,28 +1,48 @@
+import buildings.AvailabilityPublisher;
 import buildings.Building;
 import buildings.BuildingManager;
 import clients.Client;
+import loadtest.LoadGenerator;
+import loadtest.LoadProfile;
+import metrics.MessageMetrics;
+import persistence.PersistenceManager;
+import props.AvailabilityQuery;
+import props.Message;
 import rabbitMQ.RabbitMQConnector;
 import rentalAgents.RentalAgent;
+import rentalAgents.RentalAgentRouter;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
 
     public class Main {
 
         private static final ExecutorService executorService = Executors.newCachedThreadPool();
+        private static final DateTimeFormatter TIME_SLOT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
         public static void main(String[] args) {
             try {
+                if (args.length > 0 && "--load".equals(args[0])) {
+                    runLoadTest();
+                    return;
+                }
                 startApplication();
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
 
-        private static void startApplication() throws InterruptedException {
+        private static void startApplication() throws Exception {
             System.out.println("Hello! Welcome the booking.nl!");
             System.out.print("Please create a username:");
             Scanner scanner = new Scanner(System.in);
@@ -33,32 +53,77 @@ import java.util.concurrent.Executors;
             //Created to listen the fanout exchange
             BuildingManager manager = new BuildingManager();
 
-            registerBuildings(rentalAgent);
+            // Restores the buildings and reservations of the previous run
+            PersistenceManager.start();
+            // Started after recovery, so only changes made from now on are published to subscribers
+            AvailabilityPublisher.start();
+            MessageMetrics.start();
+            if (BuildingManager.getBuildings().isEmpty()) {
+                registerBuildings(rentalAgent);
+            }
 
             executorService.submit(() -> {
                 try {
-                    rentalAgent.startListening();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            });
-            executorService.submit(() -> {
-                try {
-                    client.startListening();
+                    startRentalAgents(rentalAgent);
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
             });
+            // The reply queue has to exist before the first request is sent
+            client.startListening();
+            client.subscribeToAvailability();
             // Start the user interface
             runDashboard(client, rentalAgent);
         }
 
+        /**
+         * Runs the system without the dashboard under the load described by the {@code booking.load.*} properties,
+         * prints the latencies and exits with status 1 if a room was double booked.
+         * <p>
+         * Persistence is off unless {@code booking.persistence.enabled} is set, so a run neither recovers the
+         * reservations of earlier runs nor leaves its own behind. Setting it to true, best with a separate
+         * {@code booking.persistence.dir}, measures the cost of the write-ahead log.
+         */
+        private static void runLoadTest() throws Exception {
+            // Set before the PersistenceManager is loaded, which reads the property once
+            if (System.getProperty("booking.persistence.enabled") == null) {
+                System.setProperty("booking.persistence.enabled", "false");
+            }
+            RentalAgent rentalAgent = new RentalAgent();
+            new BuildingManager();
+            PersistenceManager.start();
+            AvailabilityPublisher.start();
+            MessageMetrics.start();
+            startRentalAgents(rentalAgent);
+
+            boolean consistent = new LoadGenerator(LoadProfile.fromSystemProperties()).run(rentalAgent);
+            executorService.shutdown();
+            System.exit(consistent ? 0 : 1);
+        }
+
+        /**
+         * Starts the RentalAgent, or with {@code booking.agent.shards} above 1 that many sharded agents behind a router
+         * instead. The given agent is then only used to register buildings.
+         */
+        private static void startRentalAgents(RentalAgent rentalAgent) {
+            int shardCount = Integer.getInteger("booking.agent.shards", 1);
+            if (shardCount <= 1) {
+                rentalAgent.startListening();
+                return;
+            }
+            RentalAgentRouter router = new RentalAgentRouter();
+            for (int i = 1; i <= shardCount; i++) {
+                RentalAgent shard = new RentalAgent("shard-" + i);
+                shard.startListening();
+                router.addShard(shard);
+            }
+            router.startListening();
+        }
+
         private static void runDashboard(Client client, RentalAgent agent) {
             Scanner scanner = new Scanner(System.in);
             while (true) {
                 try {
-                    System.out.println("Dashboard is loading...");
-                    Thread.sleep(1000);
                     showMenu();
                     int choice = scanner.nextInt();
                     handleUserChoice(choice, client, agent);
@@ -69,14 +134,14 @@ import java.util.concurrent.Executors;
             }
         }
 
-        private static void showMenu() throws InterruptedException {
-            Thread.sleep(1000);
+        private static void showMenu() {
             System.out.println("----------------------- &&&&& -----------------------");
             System.out.println("1. List Buildings");
             System.out.println("2. Make a Reservation");
             System.out.println("3. Cancel the Reservation");
             System.out.println("4. View My Reservations");
-            System.out.println("5. Quit");
+            System.out.println("5. Find Free Rooms");
+            System.out.println("6. Quit");
             System.out.print("Choose an option: ");
         }
 
@@ -87,7 +152,6 @@ import java.util.concurrent.Executors;
                     break;
                 case 2:
                     requestBuildingList(client);
-                    Thread.sleep(500);
                     makeReservation(client);
                     break;
                 case 3:
@@ -97,6 +161,9 @@ import java.util.concurrent.Executors;
                     client.viewMyReservations();
                     break;
                 case 5:
+                    findFreeRooms(client);
+                    break;
+                case 6:
                     exitApplication();
                     break;
                 default:
@@ -122,11 +189,22 @@ import java.util.concurrent.Executors;
                 System.out.print("Enter Room Name (e.g., room-1): ");
                 String roomName = scanner.nextLine();
 
+                System.out.print("Enter Start Time (e.g., 2026-10-20 09:00), or leave empty to book until cancelled: ");
+                String startTime = scanner.nextLine().trim();
+                String endTime = "";
+                if (!startTime.isEmpty()) {
+                    System.out.print("Enter End Time (e.g., 2026-10-20 11:00): ");
+                    endTime = scanner.nextLine().trim();
+                }
 
-                if (validateReservationDetails(buildingName, roomName)) {
-                    client.makeReservation(buildingName, roomName);
-                } else {
+                if (!validateReservationDetails(buildingName, roomName)) {
                     System.out.println("Invalid building or room name entered. Please follow the correct format.");
+                } else if (startTime.isEmpty()) {
+                    awaitReply(client, client.makeReservation(buildingName, roomName));
+                } else if (validateTimeSlot(startTime, endTime)) {
+                    awaitReply(client, client.makeReservation(buildingName, roomName, toEpochMillis(startTime), toEpochMillis(endTime)));
+                } else {
+                    System.out.println("Invalid time slot entered. Please follow the correct format and end after the start.");
                 }
             } catch (Exception e) {
                 e.printStackTrace();
@@ -141,24 +219,67 @@ import java.util.concurrent.Executors;
             return validBuilding && validRoom;
         }
 
+        private static boolean validateTimeSlot(String startTime, String endTime) {
+            try {
+                return toEpochMillis(startTime) < toEpochMillis(endTime);
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+
+        private static long toEpochMillis(String dateTime) {
+            return LocalDateTime.parse(dateTime, TIME_SLOT_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
         private static void requestBuildingList(Client client) {
-            executorService.submit(() -> {
-                try {
-                    client.requestListOfBuildings();
-                    System.out.println("Building list is fetching. Loading...");
-                    Thread.sleep(1000);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
+            // The replica is kept up to date by the availability deltas, so it is shown without asking the RentalAgent
+            if (client.getAvailability().isSynced()) {
+                client.printAvailability();
+                return;
+            }
+            System.out.println("Building list is fetching. Loading...");
+            awaitReply(client, client.requestListOfBuildings());
         }
+
+        /**
+         * Waits for the reply to a request of the client and prints it.
+         */
+        private static void awaitReply(Client client, CompletableFuture<Message> reply) {
+            try {
+                client.printReply(reply.join());
+            } catch (CompletionException e) {
+                client.printRed(e.getCause() instanceof TimeoutException ? "No reply received in time. Please try again."
+                        : "The request failed: " + e.getCause().getMessage());
+            }
+        }
+        private static void findFreeRooms(Client client) {
+            try {
+                Scanner scanner = new Scanner(System.in);
+                System.out.print("Enter the start of the building names (e.g., building-1), or leave empty for all: ");
+                String prefix = scanner.nextLine().trim();
+                System.out.print("Enter the minimum number of free rooms, or leave empty for any: ");
+                String minFreeRooms = scanner.nextLine().trim();
+
+                AvailabilityQuery query = new AvailabilityQuery(new ArrayList<>(), prefix.isEmpty() ? null : prefix, true,
+                        minFreeRooms.isEmpty() ? 0 : Integer.parseInt(minFreeRooms), AvailabilityQuery.DEFAULT_PAGE_SIZE, null);
+                // The last page is the reply of the query and printed with it
+                awaitReply(client, client.queryAvailability(query, page -> {
+                    if (!page.isLast()) {
+                        client.printAvailabilityPage(page);
+                    }
+                }));
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number entered.");
+            }
+        }
+
         private static void cancelReservation(Client client) {
             try {
                 Scanner scanner = new Scanner(System.in);
                 if (client.viewMyReservations()){
                     System.out.print("Enter the reservation number that you want to cancel: ");
                     String reservationNumber = scanner.nextLine();
-                    client.cancelReservation(reservationNumber);
+                    awaitReply(client, client.cancelReservation(reservationNumber));
                 }
             } catch (Exception e){
                 e.printStackTrace();
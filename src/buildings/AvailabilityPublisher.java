@@ -0,0 +1,100 @@
+package buildings;
+
+import props.AvailabilityDelta;
+import props.AvailabilityState;
+import props.BuildingAvailability;
+import props.Message;
+import props.MessageType;
+import rabbitMQ.RabbitMQExchanges;
+import rabbitMQ.Sender;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Publishes every change of a room as a numbered {@link AvailabilityDelta} on the availability fanout exchange, so
+ * subscribers can keep a replica of which rooms are booked without asking for the whole list again.
+ * <p>
+ * Changes are queued by the thread that made them and numbered by a single publisher thread in queue order, so the
+ * numbers of one stream have no gaps and the deltas of a room arrive in the order the room changed. A delta carries
+ * the new state of the room rather than a flip, so applying a delta whose change a state already contains does no
+ * harm. {@link #snapshot()} relies on that: it reads the last number before the rooms, so every delta up to that
+ * number is contained in the state, and later ones may be as well.
+ */
+public class AvailabilityPublisher {
+    /**
+     * Subscribers compare it with the stream of their state, so a restarted publisher, which numbers from 1 again,
+     * makes them load a new state instead of applying deltas of another stream.
+     */
+    private static final String STREAM = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private static final BlockingQueue<AvailabilityDelta> changes = new LinkedBlockingQueue<>();
+    private static final Sender sender = new Sender();
+    private static volatile long lastSequence;
+    private static volatile boolean started;
+
+    /**
+     * Starts publishing the changes made from now on. Called after recovery, so recovered bookings are not published.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        BuildingManager.addRoomStateListener(new RoomStateListener() {
+            @Override
+            public void roomStateChanged(int buildingId, int roomIndex, boolean booked) {
+                changes.add(new AvailabilityDelta(STREAM, 0, buildingId, roomIndex, booked));
+            }
+
+            @Override
+            public void buildingAdded(int buildingId) {
+                changes.add(new AvailabilityDelta(STREAM, 0, buildingId, AvailabilityDelta.BUILDING_ADDED, false));
+            }
+        });
+        Thread publisher = new Thread(AvailabilityPublisher::runPublisher, "availability-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * @return The rooms of all buildings, containing at least every delta up to the sequence number of the state.
+     */
+    public static AvailabilityState snapshot() {
+        long sequence = lastSequence;
+        List<Building> buildings = BuildingManager.getBuildings();
+        List<BuildingAvailability> availability = new ArrayList<>(buildings.size());
+        for (Building building : buildings) {
+            List<String> roomNames = new ArrayList<>(building.getRooms().size());
+            for (ConferenceRoom room : building.getRooms()) {
+                roomNames.add(room.getRoomName());
+            }
+            availability.add(new BuildingAvailability(building.getBuildingID(), building.getBuildingName(), roomNames,
+                    building.getBookedRooms()));
+        }
+        return new AvailabilityState(STREAM, sequence, availability);
+    }
+
+    private static void runPublisher() {
+        long sequence = 0;
+        while (true) {
+            AvailabilityDelta delta;
+            try {
+                delta = changes.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            delta.setSequence(++sequence);
+            lastSequence = sequence;
+            try {
+                // A delta that cannot be published leaves a gap, which makes subscribers load a new state
+                sender.sendFanoutMessage(RabbitMQExchanges.FANOUT_AVAILABILITY,
+                        new Message(MessageType.ROOM_STATE_CHANGED, delta));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
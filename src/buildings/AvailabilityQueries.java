@@ -0,0 +1,126 @@
+package buildings;
+
+import props.AvailabilityPage;
+import props.AvailabilityQuery;
+import props.RoomStatus;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Answers an {@link AvailabilityQuery} one page at a time. Rooms are visited in the order of their building ID and room
+ * index, and the cursor of a page is the position of the room after its last one, so answering a page only looks at
+ * the buildings and rooms from the cursor on and never copies the whole catalog. Buildings keep their ID and rooms
+ * their index, so a cursor stays valid while buildings are added.
+ */
+public class AvailabilityQueries {
+    public static final int MAX_PAGE_SIZE = Integer.getInteger("booking.query.maxPageSize", 1000);
+
+    /**
+     * @param query The query with the cursor of the previous page, or none for the first page.
+     * @return The rooms matching the query from the cursor on, at most the page size of the query or
+     * {@link #MAX_PAGE_SIZE}.
+     * @throws IllegalArgumentException If the cursor was not made by this class.
+     */
+    public static AvailabilityPage page(AvailabilityQuery query) {
+        long position = query.getCursor() == null ? 0 : parseCursor(query.getCursor());
+        int buildingId = (int) (position >>> 32);
+        int roomIndex = (int) position;
+        int pageSize = Math.max(1, Math.min(query.getPageSize(), MAX_PAGE_SIZE));
+        List<RoomStatus> rooms = new ArrayList<>(Math.min(pageSize, 256));
+
+        for (Building building : buildingsFrom(query, buildingId)) {
+            if (building.getBuildingID() > buildingId) {
+                roomIndex = 0;
+            }
+            if (!matches(query, building)) {
+                continue;
+            }
+            List<ConferenceRoom> buildingRooms = building.getRooms();
+            for (int i = roomIndex; i < buildingRooms.size(); i++) {
+                ConferenceRoom room = buildingRooms.get(i);
+                boolean booked = room.isBooked();
+                if (query.isFreeOnly() && booked) {
+                    continue;
+                }
+                if (rooms.size() == pageSize) {
+                    return new AvailabilityPage(rooms, formatCursor(building.getBuildingID(), i));
+                }
+                rooms.add(new RoomStatus(building.getBuildingName(), room.getRoomName(), booked));
+            }
+        }
+        return new AvailabilityPage(rooms, null);
+    }
+
+    /**
+     * Lists the buildings from the given ID on that the query may match, in the order of their ID. Without a set of
+     * buildings in the query, each one is looked up by its ID while the page is filled.
+     */
+    private static Iterable<Building> buildingsFrom(AvailabilityQuery query, int fromBuildingId) {
+        List<String> buildingNames = query.getBuildingNames();
+        if (buildingNames == null || buildingNames.isEmpty()) {
+            return () -> new Iterator<>() {
+                private final int lastId = BuildingManager.getLastBuildingId();
+                private int nextId = Math.max(1, fromBuildingId);
+                private Building next = advance();
+
+                private Building advance() {
+                    while (nextId <= lastId) {
+                        Building building = BuildingManager.getBuildingById(nextId++);
+                        if (building != null) {
+                            return building;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Building next() {
+                    Building building = next;
+                    next = advance();
+                    return building;
+                }
+            };
+        }
+        List<Building> buildings = new ArrayList<>(buildingNames.size());
+        for (String buildingName : buildingNames) {
+            Building building = BuildingManager.getBuildingByName(buildingName);
+            if (building != null && building.getBuildingID() >= fromBuildingId && !buildings.contains(building)) {
+                buildings.add(building);
+            }
+        }
+        buildings.sort((a, b) -> Integer.compare(a.getBuildingID(), b.getBuildingID()));
+        return buildings;
+    }
+
+    private static boolean matches(AvailabilityQuery query, Building building) {
+        String prefix = query.getBuildingNamePrefix();
+        if (prefix != null && !building.getBuildingName().toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        return query.getMinFreeRooms() <= 0 || building.getFreeRoomCount() >= query.getMinFreeRooms();
+    }
+
+    private static String formatCursor(int buildingId, int roomIndex) {
+        return Long.toString(((long) buildingId << 32) | roomIndex, 36);
+    }
+
+    private static long parseCursor(String cursor) {
+        try {
+            long position = Long.parseLong(cursor, 36);
+            if (position < 0 || (int) position < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return position;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package buildings;
+
+import utils.CachedPayload;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable listing of the buildings and the availability of their rooms, one text entry per building in the order of
+ * their IDs. The version grows with every change of a room, so two snapshots with the same version list the same state.
+ * A snapshot is sent as the payload of RESPONSE_BUILDINGS and keeps its encoded form, so every request answered with
+ * the same snapshot reuses the bytes.
+ */
+public class AvailabilitySnapshot extends AbstractList<String> implements CachedPayload {
+    static final AvailabilitySnapshot EMPTY = new AvailabilitySnapshot(0, Map.of());
+
+    private final long version;
+    private final Map<Integer, String> entriesByBuilding;
+    private final List<String> entries;
+    private final Map<String, Object> encodings = new ConcurrentHashMap<>(2);
+
+    /**
+     * @param version           The version of the room states the entries describe.
+     * @param entriesByBuilding The entry of each building by its ID, in the order of the IDs.
+     */
+    AvailabilitySnapshot(long version, Map<Integer, String> entriesByBuilding) {
+        this.version = version;
+        this.entriesByBuilding = entriesByBuilding;
+        this.entries = List.copyOf(entriesByBuilding.values());
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The entry of a building, or null if the snapshot does not list it.
+     */
+    String entryOf(int buildingId) {
+        return entriesByBuilding.get(buildingId);
+    }
+
+    @Override
+    public String get(int index) {
+        return entries.get(index);
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public Object getValue() {
+        return entries;
+    }
+
+    @Override
+    public Object getCachedEncoding(String contentType) {
+        return encodings.get(contentType);
+    }
+
+    @Override
+    public void cacheEncoding(String contentType, Object encoded) {
+        encodings.put(contentType, encoded);
+    }
+}
@@ -0,0 +1,83 @@
+package buildings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the latest {@link AvailabilitySnapshot}. A change of a room marks its building and increments the version;
+ * the next request after a change builds a new snapshot that describes only the marked buildings again and takes the
+ * entries of all others from the previous snapshot. Only one snapshot is built at a time: requests arriving while it
+ * is built wait for it and share the result instead of building their own.
+ */
+public class AvailabilitySnapshots {
+    private static final AtomicLong version = new AtomicLong();
+    private static final Set<Integer> changedBuildings = ConcurrentHashMap.newKeySet();
+    private static final AtomicReference<CompletableFuture<AvailabilitySnapshot>> building = new AtomicReference<>();
+    private static volatile AvailabilitySnapshot latest = AvailabilitySnapshot.EMPTY;
+
+    /**
+     * Marks a building whose rooms changed, or which was added, so the next snapshot describes it again.
+     */
+    static void buildingChanged(int buildingId) {
+        // Marked before the version moves, so a snapshot of the new version never misses the building
+        changedBuildings.add(buildingId);
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return A snapshot of the current state, or one built while this call waited for it.
+     */
+    public static AvailabilitySnapshot current() {
+        AvailabilitySnapshot snapshot = latest;
+        if (snapshot.getVersion() == version.get()) {
+            return snapshot;
+        }
+        CompletableFuture<AvailabilitySnapshot> build = new CompletableFuture<>();
+        CompletableFuture<AvailabilitySnapshot> running = building.compareAndExchange(null, build);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            snapshot = rebuild(latest);
+            latest = snapshot;
+            build.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            build.completeExceptionally(e);
+            throw e;
+        } finally {
+            building.set(null);
+        }
+    }
+
+    private static AvailabilitySnapshot rebuild(AvailabilitySnapshot previous) {
+        long snapshotVersion = version.get();
+        Map<Integer, String> entries = new LinkedHashMap<>();
+        for (Building building : BuildingManager.getBuildings()) {
+            int buildingId = building.getBuildingID();
+            // A change after this point marks the building again, so the next snapshot picks it up
+            String entry = changedBuildings.remove(buildingId) ? null : previous.entryOf(buildingId);
+            entries.put(buildingId, entry != null ? entry : describe(building));
+        }
+        return new AvailabilitySnapshot(snapshotVersion, entries);
+    }
+
+    /**
+     * Describes a building with the number of its free rooms and the state of each room.
+     */
+    private static String describe(Building building) {
+        StringBuilder entry = new StringBuilder(48 + building.getRooms().size() * 32)
+                .append("Building: ").append(building.getBuildingName())
+                .append(" (").append(building.getFreeRoomCount()).append(" of ").append(building.getRooms().size())
+                .append(" available)");
+        for (ConferenceRoom room : building.getRooms()) {
+            entry.append("\n    ").append(room.getRoomName()).append(" - ").append(room.isBooked() ? "Booked" : "Available");
+        }
+        return entry.toString();
+    }
+}
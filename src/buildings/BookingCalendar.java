@@ -0,0 +1,123 @@
+package buildings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Bookings of one room as non-overlapping time slots in a skip list ordered by start time. Because slots never overlap,
+ * a new slot can only collide with the slot starting at or before its start and the first slot starting after it, so
+ * overlap checks and free-between queries take O(log n). Changes are made under the calendar's lock, reads go straight
+ * to the skip list.
+ * Times are epoch milliseconds, each slot runs from its start (inclusive) to its end (exclusive).
+ */
+public class BookingCalendar {
+    private final ConcurrentSkipListMap<Long, Booking> bookings = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds a booking if the slot does not overlap any existing booking. An empty or reversed slot is refused rather
+     * than stored as a booking that covers no time.
+     *
+     * @return true if the slot was free and is now booked.
+     */
+    public synchronized boolean tryBook(long startTime, long endTime, String reservationNumber) {
+        if (startTime >= endTime || !isFreeBetween(startTime, endTime)) {
+            return false;
+        }
+        bookings.put(startTime, new Booking(startTime, endTime, reservationNumber));
+        return true;
+    }
+
+    /**
+     * Removes the booking with exactly the given slot. When a reservation number is given it has to match as well,
+     * so a cancellation cannot remove another reservation's booking.
+     *
+     * @return true if the booking was found and removed.
+     */
+    public synchronized boolean cancel(long startTime, long endTime, String reservationNumber) {
+        Booking booking = bookings.get(startTime);
+        if (booking == null || booking.getEndTime() != endTime
+                || (reservationNumber != null && booking.getReservationNumber() != null
+                && !reservationNumber.equals(booking.getReservationNumber()))) {
+            return false;
+        }
+        return bookings.remove(startTime, booking);
+    }
+
+    /**
+     * @return true if no booking overlaps the slot from start (inclusive) to end (exclusive).
+     */
+    public boolean isFreeBetween(long startTime, long endTime) {
+        Map.Entry<Long, Booking> before = bookings.floorEntry(startTime);
+        if (before != null && before.getValue().getEndTime() > startTime) {
+            return false;
+        }
+        Map.Entry<Long, Booking> after = bookings.higherEntry(startTime);
+        return after == null || after.getKey() >= endTime;
+    }
+
+    /**
+     * @return The booking running at the given time, or null if the room is free then.
+     */
+    public Booking bookingAt(long time) {
+        Map.Entry<Long, Booking> before = bookings.floorEntry(time);
+        return before != null && before.getValue().getEndTime() > time ? before.getValue() : null;
+    }
+
+    /**
+     * @return The start of the first booking starting after the given time, or {@code Long.MAX_VALUE} if there is none.
+     */
+    public long nextStartAfter(long time) {
+        Long next = bookings.higherKey(time);
+        return next == null ? Long.MAX_VALUE : next;
+    }
+
+    /**
+     * @return The bookings overlapping the slot from start (inclusive) to end (exclusive), ordered by start time.
+     */
+    public List<Booking> getBookingsBetween(long startTime, long endTime) {
+        Long first = bookings.floorKey(startTime);
+        NavigableMap<Long, Booking> candidates = bookings.subMap(first == null ? startTime : first, true, endTime, false);
+        List<Booking> overlapping = new ArrayList<>();
+        for (Booking booking : candidates.values()) {
+            if (booking.getEndTime() > startTime) {
+                overlapping.add(booking);
+            }
+        }
+        return overlapping;
+    }
+
+    public boolean isEmpty() {
+        return bookings.isEmpty();
+    }
+
+    public int size() {
+        return bookings.size();
+    }
+
+    public static class Booking {
+        private final long startTime;
+        private final long endTime;
+        private final String reservationNumber;
+
+        public Booking(long startTime, long endTime, String reservationNumber) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.reservationNumber = reservationNumber;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public String getReservationNumber() {
+            return reservationNumber;
+        }
+    }
+}
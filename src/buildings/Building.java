@@ -2,36 +2,105 @@ package buildings;
 
 import props.*;
 import rabbitMQ.*;
-import java.util.*;
+import tracing.Span;
+import tracing.Tracer;
 
+import java.util.*;
 
+/**
+ * A building with its conference rooms. Buildings do not consume a queue of their own: the BuildingManager takes the
+ * messages of all buildings from the shared {@link BuildingQueues} and passes each to the {@link BuildingMailbox} of
+ * its building, which handles them one at a time.
+ */
 public class Building {
+    private static final String ROOM_PREFIX = "Room-";
+    private static final int MAX_ROOM_NUMBER_DIGITS = 9;
+    private static final String NOT_BOOKED_WITH_BATCH = "Not booked because another room of the batch is not available.";
+
     private final String buildingName;
     private final int buildingID;
     private final List<ConferenceRoom> rooms;
-    private final Sender sender;
+    private final Map<String, ConferenceRoom> roomsByName;
+    private static final Sender sender = new Sender();
+
+    private final RoomAvailability availability;
+    private final BuildingMailbox mailbox = new BuildingMailbox(this::handleMailboxMessage);
 
     public Building(int nmOfRooms) {
-        this.buildingID = BuildingManager.getLastIndexOfBuildingsList() + 1;
+        this(BuildingManager.nextBuildingId(), nmOfRooms);
+    }
+
+    /**
+     * Creates a building with a known ID, e.g. when the state is recovered after a restart.
+     */
+    public Building(int buildingID, int nmOfRooms) {
+        this.buildingID = buildingID;
         this.buildingName = "Building-" + buildingID;
-        this.rooms = new ArrayList<>();
+        this.rooms = new ArrayList<>(nmOfRooms);
+        this.roomsByName = new HashMap<>();
+        this.availability = new RoomAvailability(nmOfRooms,
+                (roomIndex, booked) -> BuildingManager.fireRoomStateChanged(buildingID, roomIndex, booked));
         for (int i = 1; i <= nmOfRooms; i++) {
-            rooms.add(new ConferenceRoom("Room-" + i));
+            // Interned so reservations and messages share one instance per room name
+            ConferenceRoom room = new ConferenceRoom((ROOM_PREFIX + i).intern(), i - 1, availability);
+            rooms.add(room);
+            roomsByName.put(room.getRoomName().toLowerCase(Locale.ROOT), room);
+        }
+    }
+
+    /**
+     * Queues a message for this building. New reservations are refused with RESERVATION_FAILED while the mailbox is
+     * full; releases are always taken, since the RentalAgent has already cancelled their reservation.
+     *
+     * @param message Message received from the RentalAgent.
+     */
+    void deliver(Message message) {
+        Tracer.handOff(message);
+        boolean refusable = message.getType() == MessageType.MAKE_RESERVATION
+                || message.getType() == MessageType.MAKE_RESERVATION_BATCH;
+        if (!refusable) {
+            mailbox.put(message);
+        } else if (!mailbox.offer(message)) {
+            refuseBusy(message);
+        }
+    }
+
+    /**
+     * @return The number of messages waiting to be handled by this building.
+     */
+    public int getPendingMessageCount() {
+        return mailbox.size();
+    }
+
+    private void refuseBusy(Message message) {
+        String detail = buildingName + " is busy. Please try again.";
+        if (message.getType() == MessageType.MAKE_RESERVATION_BATCH) {
+            List<ReservationRequest> requests = ((ReservationBatch) message.getPayload()).getRequests();
+            List<ReservationResult> results = new ArrayList<>(requests.size());
+            for (ReservationRequest request : requests) {
+                results.add(new ReservationResult(request, MessageType.RESERVATION_FAILED, detail));
+            }
+            sendMessage(message, new Message(MessageType.BATCH_RESULT, new ReservationBatchResult(results)));
+        } else {
+            sendMessage(message, new Message(MessageType.RESERVATION_FAILED, detail));
         }
-        sender = new Sender();
     }
+
     /**
-     * Begins listening for responses
+     * Handles a message taken from the mailbox. A traced message gets a span of its own, which tells the time it
+     * waited in the mailbox apart from the time it waited in the queue of its partition.
+     *
+     * @param message Message received from the RentalAgent.
      */
-    public void startListening() {
-        try{
-            String queueName = RoutingConfig.BUILDING_QUEUE.getValue() + buildingID;
-            String keyName = RoutingConfig.BUILDING_KEY.getValue() + buildingID;
-            Receiver.receiveDirectMessage(queueName, keyName, this::handleReceivedMessage);
-        } catch (Exception e){
-            e.printStackTrace();
+    private void handleMailboxMessage(Message message) {
+        Span span = Tracer.isTraced(message) ? Tracer.startSpan("BUILDING_MAILBOX." + buildingName, message) : null;
+        try {
+            handleReceivedMessage(message);
+        } finally {
+            Tracer.endSpan(span);
         }
     }
+
     /**
      * Handles different types of received messages.
      *
@@ -45,71 +114,159 @@ public class Building {
             case MessageType.CANCEL_RESERVATION:
                 handleCancellationRequest(message);
                 break;
+            case MessageType.MAKE_RESERVATION_BATCH:
+                handleReservationBatch(message);
+                break;
+            case MessageType.CANCEL_RESERVATION_BATCH:
+                handleCancellationBatch(message);
+                break;
         }
     }
 
     private void handleReservationRequest(Message message) {
-        String roomName = (String) message.getPayload();
-        Optional<ConferenceRoom> roomOptional = findRoom(roomName);
-        if (roomOptional.isPresent()) {
-            handleRoomFound(roomOptional.get());
-        } else {
-            Message roomNotFoundMessage = new Message(MessageType.ROOM_NOT_FOUND,"This room is not exist!");
-            sendMessage(roomNotFoundMessage);
+        ReservationResult result = reserve((ReservationRequest) message.getPayload());
+        sendMessage(message, new Message(result.getStatus(), result.getDetail()));
+    }
+
+    /**
+     * Books the rooms of a batch and replies with the result of each reservation. In all-or-nothing mode the rooms
+     * booked so far are released again as soon as one room cannot be booked, and the remaining rooms are not tried.
+     *
+     * @param message The batch of reservations for rooms of this building.
+     */
+    private void handleReservationBatch(Message message) {
+        ReservationBatch batch = (ReservationBatch) message.getPayload();
+        List<ReservationRequest> requests = batch.getRequests();
+        List<ReservationResult> results = new ArrayList<>(requests.size());
+        boolean failed = false;
+        for (ReservationRequest request : requests) {
+            if (failed && batch.isAllOrNothing()) {
+                results.add(new ReservationResult(request, MessageType.RESERVATION_FAILED, NOT_BOOKED_WITH_BATCH));
+                continue;
+            }
+            ReservationResult result = reserve(request);
+            failed |= !result.isSuccessful();
+            results.add(result);
+        }
+        if (failed && batch.isAllOrNothing()) {
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i).isSuccessful()) {
+                    release(requests.get(i));
+                    results.set(i, new ReservationResult(requests.get(i), MessageType.RESERVATION_FAILED, NOT_BOOKED_WITH_BATCH));
+                }
+            }
         }
+        sendMessage(message, new Message(MessageType.BATCH_RESULT, new ReservationBatchResult(results)));
     }
 
-    private Optional<ConferenceRoom> findRoom(String roomName) {
-        return rooms.stream()
-                .filter(room -> room.getRoomName().equalsIgnoreCase(roomName))
-                .findFirst();
+    /**
+     * Books the requested time slot of a room. Booking is atomic, so of two concurrent requests for overlapping slots
+     * only one succeeds.
+     *
+     * @return The result with status CONFIRM_RESERVATION if the slot was booked.
+     */
+    private ReservationResult reserve(ReservationRequest request) {
+        ConferenceRoom room = findRoom(request.getRoomName());
+        if (room == null) {
+            return new ReservationResult(request, MessageType.ROOM_NOT_FOUND, "This room is not exist!");
+        }
+        if (!room.bookRoom(request.getStartTime(), request.getEndTime(), request.getReservationNumber())) {
+            return new ReservationResult(request, MessageType.ALREADY_BOOKED, "This room is already booked for the requested time.");
+        }
+        return new ReservationResult(request, MessageType.CONFIRM_RESERVATION,
+                "The reservation is confirmed for " + this.buildingName + " " + room.getRoomName());
     }
 
-    private void handleRoomFound(ConferenceRoom room) {
-        if (!room.isBooked()) {
-            bookRoom(room);
-        } else {
-            Message message = new Message(MessageType.ALREADY_BOOKED,"This room is already booked.");
-            sendMessage(message);
+    /**
+     * Finds a room by its name, ignoring case. Names of the form "room-&lt;number&gt;" are resolved by their number
+     * without allocating, other names through the name index.
+     *
+     * @param roomName The name of the room to find.
+     * @return The room with the matching name, or null if not found.
+     */
+    private ConferenceRoom findRoom(String roomName) {
+        if (roomName == null) {
+            return null;
+        }
+        int roomNumber = parseRoomNumber(roomName);
+        if (roomNumber > 0) {
+            return roomNumber <= rooms.size() ? rooms.get(roomNumber - 1) : null;
         }
+        return roomsByName.get(roomName.toLowerCase(Locale.ROOT));
     }
 
-    private void bookRoom(ConferenceRoom room) {
-        room.bookRoom();
-        Message responseMessage = new Message(MessageType.CONFIRM_RESERVATION, "The reservation is confirmed for " + this.buildingName + " " + room.getRoomName());
-        sendMessage(responseMessage);
+    /**
+     * @return The number in a room name like "Room-12", or -1 if the name is not of that form.
+     */
+    private static int parseRoomNumber(String roomName) {
+        int prefixLength = ROOM_PREFIX.length();
+        int digits = roomName.length() - prefixLength;
+        if (digits < 1 || digits > MAX_ROOM_NUMBER_DIGITS || !roomName.regionMatches(true, 0, ROOM_PREFIX, 0, prefixLength)) {
+            return -1;
+        }
+        // "Room-01" is not the name of any room
+        if (digits > 1 && roomName.charAt(prefixLength) == '0') {
+            return -1;
+        }
+        int number = 0;
+        for (int i = prefixLength; i < roomName.length(); i++) {
+            char c = roomName.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
     }
 
     private void handleCancellationRequest(Message message) {
-        String roomName = (String) message.getPayload();
-        Optional<ConferenceRoom> roomOptional = findRoom(roomName);
-        if (roomOptional.isPresent()) {
-            unbookRoom(roomOptional.get());
-        } else {
-            Message roomNotFoundMessage = new Message(MessageType.ROOM_NOT_FOUND, "This room does not exist!");
-            sendMessage(roomNotFoundMessage);
-        }
+        ReservationResult result = release((ReservationRequest) message.getPayload());
+        sendMessage(message, new Message(result.getStatus(), result.getDetail()));
     }
 
-    private void unbookRoom(ConferenceRoom room) {
-        if (room.isBooked()) {
-            room.unbookRoom();
-            Message responseMessage = new Message(MessageType.RESERVATION_CANCELLED, "Reservation cancelled for " + room.getRoomName());
-            sendMessage(responseMessage);
-        } else {
-            Message message = new Message(MessageType.ROOM_NOT_BOOKED, "This room is not booked.");
-            sendMessage(message);
+    /**
+     * Releases the rooms of a batch of cancelled reservations and replies with the result of each one.
+     *
+     * @param message The batch of cancellations for rooms of this building.
+     */
+    private void handleCancellationBatch(Message message) {
+        ReservationBatch batch = (ReservationBatch) message.getPayload();
+        List<ReservationResult> results = new ArrayList<>(batch.getRequests().size());
+        for (ReservationRequest request : batch.getRequests()) {
+            results.add(release(request));
         }
+        sendMessage(message, new Message(MessageType.BATCH_RESULT, new ReservationBatchResult(results)));
     }
 
-    private void sendMessage(Message message) {
-        try {
-            sender.sendDirectMessage(RoutingConfig.RENTAL_AGENT_QUEUE.getValue(),
-                    RoutingConfig.RENTAL_AGENT_KEY.getValue(),
-                    message);
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Releases the booked time slot of a room.
+     *
+     * @return The result with status RESERVATION_CANCELLED if the slot was released.
+     */
+    private ReservationResult release(ReservationRequest request) {
+        ConferenceRoom room = findRoom(request.getRoomName());
+        if (room == null) {
+            return new ReservationResult(request, MessageType.ROOM_NOT_FOUND, "This room does not exist!");
+        }
+        if (!room.unbookRoom(request.getStartTime(), request.getEndTime(), request.getReservationNumber())) {
+            return new ReservationResult(request, MessageType.ROOM_NOT_BOOKED, "This room is not booked.");
         }
+        return new ReservationResult(request, MessageType.RESERVATION_CANCELLED, "Reservation cancelled for " + room.getRoomName());
+    }
+
+    /**
+     * Replies to a request of the RentalAgent. Requests without a reply-to address, such as the release of a room
+     * after a reservation timed out, get no reply.
+     *
+     * @param request The request of the RentalAgent.
+     * @param message The reply.
+     */
+    private void sendMessage(Message request, Message message) {
+        sender.sendReply(request, message).whenComplete((sent, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+        });
     }
 
     public String getBuildingName() {
@@ -120,6 +277,35 @@ public class Building {
         return rooms;
     }
 
+    /**
+     * Retrieves a room of this building by its name, ignoring case.
+     *
+     * @param roomName The name of the room to find.
+     * @return The room with the matching name, or null if not found.
+     */
+    public ConferenceRoom getRoom(String roomName) {
+        return findRoom(roomName);
+    }
+
+    public int getFreeRoomCount() {
+        return availability.countFreeRooms();
+    }
+
+    /**
+     * @return Which rooms are booked, one bit per room in the order of {@link #getRooms()}.
+     */
+    public long[] getBookedRooms() {
+        return availability.toWords();
+    }
+
+    /**
+     * @return The free room with the lowest number, or empty if every room is booked.
+     */
+    public Optional<ConferenceRoom> findFirstFreeRoom() {
+        int roomIndex = availability.firstFreeRoom();
+        return roomIndex < 0 ? Optional.empty() : Optional.of(rooms.get(roomIndex));
+    }
+
     @Override
     public String toString() {
         return buildingName + " Rooms: " + rooms;
@@ -0,0 +1,97 @@
+package buildings;
+
+import props.Message;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The messages waiting for one building. A building only has a thread while it has messages: the first message
+ * schedules a virtual thread that handles the messages one at a time and ends once the mailbox is empty, so the
+ * messages of a building never run concurrently and idle buildings cost no thread at all.
+ * <p>
+ * The mailbox holds at most {@code booking.building.mailboxCapacity} (default 1024) messages it may refuse; messages
+ * that must not get lost, like releasing a room, are always taken.
+ */
+class BuildingMailbox implements Runnable {
+    static final int CAPACITY = Integer.getInteger("booking.building.mailboxCapacity", 1024);
+    /**
+     * Messages handled before the thread makes way for other buildings, so a busy building cannot hold a carrier
+     * thread forever.
+     */
+    private static final int MESSAGES_PER_RUN = 64;
+    private static final ExecutorService scheduler =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("building-", 0).factory());
+
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<Message> handler;
+
+    /**
+     * @param handler Handles one message of the building. Never called concurrently.
+     */
+    BuildingMailbox(Consumer<Message> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Adds a message unless the mailbox is full.
+     *
+     * @return false if the mailbox is full and the message was not added.
+     */
+    boolean offer(Message message) {
+        if (size.incrementAndGet() > CAPACITY) {
+            size.decrementAndGet();
+            return false;
+        }
+        messages.add(message);
+        schedule();
+        return true;
+    }
+
+    /**
+     * Adds a message even if the mailbox is full.
+     */
+    void put(Message message) {
+        size.incrementAndGet();
+        messages.add(message);
+        schedule();
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < MESSAGES_PER_RUN; i++) {
+            Message message = messages.poll();
+            if (message == null) {
+                break;
+            }
+            size.decrementAndGet();
+            try {
+                handler.accept(message);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        scheduled.set(false);
+        // A message added after the last poll but before the flag was cleared did not schedule a run itself
+        if (!messages.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.execute(this);
+        }
+    }
+}
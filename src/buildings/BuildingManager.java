@@ -1,20 +1,48 @@
 package buildings;
 
+import persistence.PersistenceManager;
+import persistence.StateEvent;
 import props.Message;
 import props.MessageType;
+import props.ReservationBatch;
+import props.ReservationRequest;
+import rabbitMQ.ConsumerOptions;
 import rabbitMQ.RabbitMQExchanges;
 import rabbitMQ.Receiver;
 import rabbitMQ.RoutingConfig;
 import rabbitMQ.Sender;
+import reservations.ReservationIds;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BuildingManager {
 
-    private static List<Building> buildings = new ArrayList<>();
+    private static final Map<Integer, Building> buildingsById = new ConcurrentHashMap<>();
+    private static final Map<String, Building> buildingsByName = new ConcurrentHashMap<>();
+    private static final AtomicInteger lastBuildingId = new AtomicInteger();
+    private static final List<RoomStateListener> roomStateListeners = new CopyOnWriteArrayList<>();
+    private static final AtomicBoolean buildingConsumerStarted = new AtomicBoolean();
 
+    /**
+     * Returns a snapshot of the registered buildings ordered by their ID.
+     */
     public static List<Building> getBuildings() {
+        int lastId = lastBuildingId.get();
+        List<Building> buildings = new ArrayList<>(buildingsById.size());
+        for (int id = 1; id <= lastId; id++) {
+            Building building = buildingsById.get(id);
+            // IDs of buildings that are still being created have no entry yet
+            if (building != null) {
+                buildings.add(building);
+            }
+        }
         return buildings;
     }
 
@@ -61,20 +89,103 @@ public class BuildingManager {
             int rooms = Integer.parseInt(numberOfRooms);
             Building building = new Building(rooms);
 
-            buildings.add(building);
-            new Thread(() -> {
-                try {
-                    building.startListening();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }).start();
+            long stamp = PersistenceManager.beginUpdate();
+            try {
+                // Recorded before the building can be found, so its registration precedes its reservations in the log
+                PersistenceManager.record(StateEvent.buildingRegistered(building.getBuildingID(), rooms));
+                addBuilding(building);
+            } finally {
+                PersistenceManager.endUpdate(stamp);
+            }
             notifyNewBuilding(building);
 
         } catch (NumberFormatException e) {
             System.err.println("Error parsing number of rooms: " + numberOfRooms);
             e.printStackTrace();
+        } catch (IllegalStateException e) {
+            System.err.println("Building not registered: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds a recovered building with its original ID without recording it in the log again.
+     * Later buildings get IDs after the highest restored one.
+     *
+     * @param buildingID    The ID of the building.
+     * @param numberOfRooms The number of rooms of the building.
+     * @return The restored building, or the existing one if a building with that ID is already registered, or null if
+     * the ID does not fit into a reservation number.
+     */
+    public static Building restoreBuilding(int buildingID, int numberOfRooms) {
+        if (!ReservationIds.fits(buildingID)) {
+            System.err.println("Building " + buildingID + " not restored, its ID is above "
+                    + ReservationIds.MAX_BUILDING_ID);
+            return null;
+        }
+        Building existing = buildingsById.get(buildingID);
+        if (existing != null) {
+            return existing;
+        }
+        lastBuildingId.accumulateAndGet(buildingID, Math::max);
+        Building building = new Building(buildingID, numberOfRooms);
+        addBuilding(building);
+        return building;
+    }
+
+    private static void addBuilding(Building building) {
+        buildingsById.put(building.getBuildingID(), building);
+        buildingsByName.put(normalizeName(building.getBuildingName()), building);
+        AvailabilitySnapshots.buildingChanged(building.getBuildingID());
+        for (RoomStateListener listener : roomStateListeners) {
+            listener.buildingAdded(building.getBuildingID());
         }
+        startBuildingConsumer();
+    }
+
+    /**
+     * Starts one consumer for each partition of the building queues, once the first building exists. The callbacks only
+     * put each message into the mailbox of its building, so they never wait for a building.
+     */
+    private static void startBuildingConsumer() {
+        if (!buildingConsumerStarted.compareAndSet(false, true)) {
+            return;
+        }
+        for (int partition = 0; partition < BuildingQueues.PARTITIONS; partition++) {
+            try {
+                String queueName = BuildingQueues.queueOf(partition);
+                // Messages of the same building have to reach its mailbox in the order they arrived
+                ConsumerOptions options = ConsumerOptions.forQueue(queueName).withOrderingKey(BuildingQueues::buildingIdOf);
+                Receiver.receiveDirectMessage(queueName, BuildingQueues.keyOf(partition), BuildingManager::dispatch, options);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Passes a message to the building named in its building ID header. Messages without the header are passed to
+     * the building of their reservation, or of the first reservation of a batch.
+     *
+     * @param message Message received from a building queue.
+     */
+    private static void dispatch(Message message) {
+        int buildingId = BuildingQueues.buildingIdOf(message);
+        Building building = buildingId >= 0 ? getBuildingById(buildingId) : buildingOfPayload(message.getPayload());
+        if (building == null) {
+            System.err.println("No building for message " + message.getType());
+            return;
+        }
+        building.deliver(message);
+    }
+
+    private static Building buildingOfPayload(Object payload) {
+        ReservationRequest request = null;
+        if (payload instanceof ReservationRequest single) {
+            request = single;
+        } else if (payload instanceof ReservationBatch batch && !batch.getRequests().isEmpty()) {
+            request = batch.getRequests().get(0);
+        }
+        return request == null ? null : getBuildingByName(request.getBuildingName());
     }
 
     /**
@@ -93,30 +204,74 @@ public class BuildingManager {
     }
 
     /**
-     * Retrieves the index that would be assigned to the next building added to the list.
-     * This is equivalent to the size of the current list of buildings.
+     * Allocates the ID for a new building. IDs start at 1 and are never handed out twice, even when buildings
+     * are created concurrently.
      *
-     * @return The index for the next building or 0 if the list is empty.
+     * @return The ID for the next building.
+     * @throws IllegalStateException If the ID would be above {@link ReservationIds#MAX_BUILDING_ID}, so the building
+     *                               could not take reservation numbers.
      */
-    public static int getLastIndexOfBuildingsList(){
-        if (buildings.isEmpty()) {
-            return 0;
-        } else {
-            return buildings.size();
+    public static int nextBuildingId() {
+        int buildingId = lastBuildingId.incrementAndGet();
+        if (!ReservationIds.fits(buildingId)) {
+            throw new IllegalStateException("No more than " + ReservationIds.MAX_BUILDING_ID + " buildings can be registered");
         }
+        return buildingId;
     }
 
     /**
-     * Retrieves a building by its name.
+     * @return The highest ID handed out so far. Buildings with lower IDs may still be being created.
+     */
+    public static int getLastBuildingId() {
+        return lastBuildingId.get();
+    }
+
+    /**
+     * Retrieves a building by its name, ignoring case.
      *
      * @param buildingName The name of the building to find.
      * @return The {@code Building} object with the matching name, or null if not found.
      */
     public static Building getBuildingByName(String buildingName) {
-        return buildings.stream()
-                .filter(b -> b.getBuildingName().equalsIgnoreCase(buildingName))
-                .findFirst()
-                .orElse(null);
+        if (buildingName == null) {
+            return null;
+        }
+        return buildingsByName.get(normalizeName(buildingName));
+    }
+
+    /**
+     * Retrieves a building by its ID.
+     *
+     * @param buildingID The ID of the building to find.
+     * @return The {@code Building} object with the matching ID, or null if not found.
+     */
+    public static Building getBuildingById(int buildingID) {
+        return buildingsById.get(buildingID);
+    }
+
+    /**
+     * Registers a listener that is told whenever a room of any building becomes booked or free, or a building is added.
+     */
+    public static void addRoomStateListener(RoomStateListener listener) {
+        roomStateListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addRoomStateListener(RoomStateListener)}.
+     */
+    public static void removeRoomStateListener(RoomStateListener listener) {
+        roomStateListeners.remove(listener);
+    }
+
+    static void fireRoomStateChanged(int buildingId, int roomIndex, boolean booked) {
+        AvailabilitySnapshots.buildingChanged(buildingId);
+        for (RoomStateListener listener : roomStateListeners) {
+            listener.roomStateChanged(buildingId, roomIndex, booked);
+        }
+    }
+
+    private static String normalizeName(String buildingName) {
+        return buildingName.toLowerCase(Locale.ROOT);
     }
 
 }
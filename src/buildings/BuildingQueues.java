@@ -0,0 +1,57 @@
+package buildings;
+
+import props.Message;
+import rabbitMQ.RoutingConfig;
+
+/**
+ * The queues the messages for buildings go through. Buildings share {@code booking.building.partitions} (default 4)
+ * queues instead of having one each, so the number of queues and consumers does not grow with the catalog. A building
+ * always uses the partition chosen by the hash of its ID, and the partition is consumed in order, so the messages of
+ * a building keep their order. Each message names its building in the {@link #BUILDING_ID_HEADER} header, by which
+ * the BuildingManager passes it to the building.
+ */
+public class BuildingQueues {
+    public static final String BUILDING_ID_HEADER = "buildingId";
+    public static final int PARTITIONS = Math.max(1, Integer.getInteger("booking.building.partitions", 4));
+
+    /**
+     * @return The partition of the building, from 0 to {@link #PARTITIONS} - 1.
+     */
+    public static int partitionOf(int buildingId) {
+        int hash = buildingId * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), PARTITIONS);
+    }
+
+    public static String queueOf(int partition) {
+        return RoutingConfig.BUILDING_QUEUE.getValue() + "." + partition;
+    }
+
+    public static String keyOf(int partition) {
+        return RoutingConfig.BUILDING_KEY.getValue() + "." + partition;
+    }
+
+    /**
+     * Marks a message as being for a building.
+     *
+     * @return The message.
+     */
+    public static Message address(Message message, int buildingId) {
+        message.setHeader(BUILDING_ID_HEADER, Integer.toString(buildingId));
+        return message;
+    }
+
+    /**
+     * @return The ID of the building the message is for, or -1 if it names none.
+     */
+    public static int buildingIdOf(Message message) {
+        String buildingId = message.getHeader(BUILDING_ID_HEADER);
+        if (buildingId == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(buildingId);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,35 +1,117 @@
 package buildings;
 
 public class ConferenceRoom {
-    private String roomName;
-    private boolean isBooked;
+    private final String roomName;
+    private final int roomIndex;
+    private final RoomAvailability availability;
+    private final BookingCalendar calendar = new BookingCalendar();
+    /**
+     * When the room clock wakes this room next, in epoch milliseconds. Guarded by the calendar.
+     */
+    private long wakeUpAt = Long.MAX_VALUE;
 
-    public ConferenceRoom(String roomName) {
+    /**
+     * @param roomName     Name of the room.
+     * @param roomIndex    Zero-based position of the room in its building.
+     * @param availability Booked state of the rooms of the building the room belongs to.
+     */
+    public ConferenceRoom(String roomName, int roomIndex, RoomAvailability availability) {
         this.roomName = roomName;
-        this.isBooked = false;
+        this.roomIndex = roomIndex;
+        this.availability = availability;
     }
 
     public String getRoomName() {
         return roomName;
     }
 
+    public int getRoomIndex() {
+        return roomIndex;
+    }
+
+    /**
+     * @return true if a booking of the room is running now. Bookings that ended or have not started yet do not count;
+     * use {@link #isFreeBetween(long, long)} for other times.
+     */
     public boolean isBooked() {
-        return isBooked;
+        return availability.isBooked(roomIndex);
+    }
+
+    public boolean isFreeBetween(long startTime, long endTime) {
+        return calendar.isFreeBetween(startTime, endTime);
+    }
+
+    public BookingCalendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * Books the room for a time slot if no other booking overlaps it.
+     * The availability bit of the room is set while one of its bookings is running, see {@link #isBooked()}.
+     *
+     * @return true if this call booked the slot, false if it overlaps an existing booking.
+     */
+    public boolean bookRoom(long startTime, long endTime, String reservationNumber) {
+        synchronized (calendar) {
+            if (!calendar.tryBook(startTime, endTime, reservationNumber)) {
+                return false;
+            }
+            updateAvailability(false);
+            return true;
+        }
+    }
+
+    /**
+     * Removes the booking of a time slot.
+     *
+     * @return true if this call removed the booking, false if the slot was not booked by that reservation.
+     */
+    public boolean unbookRoom(long startTime, long endTime, String reservationNumber) {
+        synchronized (calendar) {
+            if (!calendar.cancel(startTime, endTime, reservationNumber)) {
+                return false;
+            }
+            updateAvailability(false);
+            return true;
+        }
     }
 
-    public void bookRoom() {
-        this.isBooked = true;
+    /**
+     * Sets the availability bit to whether a booking is running now and makes sure the room clock wakes the room when
+     * that changes next. A wake-up that is no longer needed only updates the bit to what it already is.
+     *
+     * @param wokenUp true if called by the room clock, whose wake-up is used up.
+     */
+    private void updateAvailability(boolean wokenUp) {
+        long now = System.currentTimeMillis();
+        BookingCalendar.Booking running = calendar.bookingAt(now);
+        if (running != null) {
+            availability.tryBook(roomIndex);
+        } else {
+            availability.tryUnbook(roomIndex);
+        }
+        long nextChange = running != null ? running.getEndTime() : calendar.nextStartAfter(now);
+        if (wokenUp || wakeUpAt <= now) {
+            wakeUpAt = Long.MAX_VALUE;
+        }
+        if (nextChange < wakeUpAt) {
+            wakeUpAt = nextChange;
+            RoomClock.wakeAt(nextChange, this::wakeUp);
+        }
     }
 
-    public void unbookRoom() {
-        this.isBooked = false;
+    private void wakeUp() {
+        synchronized (calendar) {
+            updateAvailability(true);
+        }
     }
 
     @Override
     public String toString() {
         return "ConferenceRoom{" +
                 "roomName='" + roomName + '\'' +
-                ", isBooked=" + isBooked +
+                ", isBooked=" + isBooked() +
+                ", bookings=" + calendar.size() +
                 '}';
     }
 }
@@ -0,0 +1,128 @@
+package buildings;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Booked state of all rooms of a building as a bitmap, one bit per room packed into {@code long} words.
+ * A room counts as booked while one of the bookings in its {@link BookingCalendar} is running.
+ * Booking and unbooking flip a single bit with a compare-and-set, so two concurrent requests for the same room can
+ * never both succeed. Counting and searching free rooms work on whole words at a time.
+ * The change listener is called after a room became booked or free.
+ */
+public class RoomAvailability {
+    private final AtomicLongArray words;
+    private final int roomCount;
+    private final ChangeListener listener;
+
+    /**
+     * Is told which room became booked or free.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        void roomChanged(int roomIndex, boolean booked);
+    }
+
+    public RoomAvailability(int roomCount) {
+        this(roomCount, (roomIndex, booked) -> { });
+    }
+
+    public RoomAvailability(int roomCount, ChangeListener listener) {
+        if (roomCount < 0) {
+            throw new IllegalArgumentException("Room count must not be negative: " + roomCount);
+        }
+        this.roomCount = roomCount;
+        this.words = new AtomicLongArray((roomCount + 63) >>> 6);
+        this.listener = listener;
+    }
+
+    /**
+     * Marks a room as booked if it is free.
+     *
+     * @param roomIndex Zero-based index of the room.
+     * @return true if the room was free and is now booked by this call, false if it was already booked.
+     */
+    public boolean tryBook(int roomIndex) {
+        int wordIndex = wordIndex(roomIndex);
+        long bit = 1L << roomIndex;
+        while (true) {
+            long word = words.get(wordIndex);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(wordIndex, word, word | bit)) {
+                listener.roomChanged(roomIndex, true);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Marks a room as free if it is booked.
+     *
+     * @param roomIndex Zero-based index of the room.
+     * @return true if the room was booked and is now freed by this call, false if it was not booked.
+     */
+    public boolean tryUnbook(int roomIndex) {
+        int wordIndex = wordIndex(roomIndex);
+        long bit = 1L << roomIndex;
+        while (true) {
+            long word = words.get(wordIndex);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (words.compareAndSet(wordIndex, word, word & ~bit)) {
+                listener.roomChanged(roomIndex, false);
+                return true;
+            }
+        }
+    }
+
+    public boolean isBooked(int roomIndex) {
+        return (words.get(wordIndex(roomIndex)) & (1L << roomIndex)) != 0;
+    }
+
+    /**
+     * @return Index of the free room with the lowest index, or -1 if every room is booked.
+     */
+    public int firstFreeRoom() {
+        for (int i = 0; i < words.length(); i++) {
+            long free = ~words.get(i);
+            if (free != 0) {
+                int roomIndex = (i << 6) + Long.numberOfTrailingZeros(free);
+                return roomIndex < roomCount ? roomIndex : -1;
+            }
+        }
+        return -1;
+    }
+
+    public int countFreeRooms() {
+        int booked = 0;
+        for (int i = 0; i < words.length(); i++) {
+            booked += Long.bitCount(words.get(i));
+        }
+        return roomCount - booked;
+    }
+
+    /**
+     * @return A copy of the bitmap, one bit per room. Words are read one by one, so rooms that change meanwhile may
+     * show their old or new state.
+     */
+    public long[] toWords() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return copy;
+    }
+
+    public int getRoomCount() {
+        return roomCount;
+    }
+
+    private int wordIndex(int roomIndex) {
+        if (roomIndex < 0 || roomIndex >= roomCount) {
+            throw new IndexOutOfBoundsException("Room index " + roomIndex + " out of range for " + roomCount + " rooms");
+        }
+        return roomIndex >>> 6;
+    }
+}
@@ -0,0 +1,26 @@
+package buildings;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wakes rooms when one of their bookings starts or ends, so their availability bit follows the wall clock. One daemon
+ * thread serves all rooms; a room only asks for its next change, not for every booking it holds.
+ */
+class RoomClock {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "room-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Runs the task at the given time, or right away if the time has passed.
+     *
+     * @param time Epoch milliseconds.
+     */
+    static void wakeAt(long time, Runnable task) {
+        timer.schedule(task, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,24 @@
+package buildings;
+
+/**
+ * Is told when a room becomes booked or free. Called on the thread that changed the room, or on the room clock when
+ * a booking starts or ends, so implementations have to be quick and must not block.
+ */
+@FunctionalInterface
+public interface RoomStateListener {
+
+    /**
+     * @param buildingId The ID of the building of the room.
+     * @param roomIndex  Zero-based index of the room in its building.
+     * @param booked     true if a booking of the room started running, false if no booking is running any more.
+     */
+    void roomStateChanged(int buildingId, int roomIndex, boolean booked);
+
+    /**
+     * Called once a new building can be found, before any of its rooms changes.
+     *
+     * @param buildingId The ID of the new building.
+     */
+    default void buildingAdded(int buildingId) {
+    }
+}
@@ -0,0 +1,206 @@
+package clients;
+
+import props.AvailabilityDelta;
+import props.AvailabilityState;
+import props.BuildingAvailability;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local copy of which rooms are booked, loaded from an {@link AvailabilityState} and kept up to date with the
+ * {@link AvailabilityDelta}s published after it. Deltas that arrive while a state is requested are buffered and applied
+ * once it is loaded. A missing delta, a delta of another stream or of an unknown building or room makes the replica
+ * request a new state, and until it is loaded the replica counts as not synced.
+ */
+public class AvailabilityReplica {
+    /**
+     * Deltas beyond this while waiting for a state are dropped; the gap they leave makes the replica load a newer one.
+     */
+    private static final int MAX_BUFFERED_DELTAS = 10000;
+
+    private final Runnable stateRequester;
+    private final Map<Integer, BuildingAvailability> buildings = new LinkedHashMap<>();
+    private final List<AvailabilityDelta> bufferedDeltas = new ArrayList<>();
+    private String stream;
+    private long sequence;
+    private boolean synced;
+    private boolean requesting;
+
+    /**
+     * @param stateRequester Requests a new state, which has to be passed to {@link #load(AvailabilityState)}, or
+     *                       {@link #loadFailed()} if it cannot be had.
+     */
+    public AvailabilityReplica(Runnable stateRequester) {
+        this.stateRequester = stateRequester;
+    }
+
+    /**
+     * Requests a new state unless one is already requested.
+     */
+    public void resync() {
+        if (beginResync()) {
+            stateRequester.run();
+        }
+    }
+
+    /**
+     * Applies a delta, or buffers it while a state is requested.
+     *
+     * @param delta A delta received from the availability fanout exchange.
+     */
+    public void apply(AvailabilityDelta delta) {
+        boolean outOfSync;
+        synchronized (this) {
+            if (!synced) {
+                if (bufferedDeltas.size() >= MAX_BUFFERED_DELTAS) {
+                    bufferedDeltas.clear();
+                }
+                bufferedDeltas.add(delta);
+                return;
+            }
+            outOfSync = !applyInOrder(delta);
+        }
+        if (outOfSync) {
+            resync();
+        }
+    }
+
+    /**
+     * Replaces the replica with a state and applies the buffered deltas that follow it.
+     *
+     * @param state The state requested by the replica.
+     */
+    public void load(AvailabilityState state) {
+        boolean outOfSync = false;
+        synchronized (this) {
+            requesting = false;
+            buildings.clear();
+            for (BuildingAvailability building : state.getBuildings()) {
+                buildings.put(building.getBuildingId(), building);
+            }
+            stream = state.getStream();
+            sequence = state.getSequence();
+            synced = true;
+            for (AvailabilityDelta delta : bufferedDeltas) {
+                // Deltas of an earlier stream were published before the state was taken
+                if (delta.getStream().equals(stream) && !applyInOrder(delta)) {
+                    outOfSync = true;
+                    break;
+                }
+            }
+            bufferedDeltas.clear();
+            if (outOfSync) {
+                synced = false;
+            }
+        }
+        if (outOfSync) {
+            resync();
+        }
+    }
+
+    /**
+     * Allows the next delta or {@link #resync()} to request a state again after a request failed.
+     */
+    public synchronized void loadFailed() {
+        requesting = false;
+    }
+
+    public synchronized boolean isSynced() {
+        return synced;
+    }
+
+    /**
+     * @return The sequence number of the last delta applied, or of the loaded state.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Describes each building with the number of its free rooms and the state of each room, like the building list
+     * of the RentalAgent.
+     */
+    public synchronized List<String> describeBuildings() {
+        List<String> entries = new ArrayList<>(buildings.size());
+        for (BuildingAvailability building : buildings.values()) {
+            List<String> roomNames = building.getRoomNames();
+            long[] booked = building.getBookedRooms();
+            int bookedCount = 0;
+            for (long word : booked) {
+                bookedCount += Long.bitCount(word);
+            }
+            StringBuilder entry = new StringBuilder(48 + roomNames.size() * 32)
+                    .append("Building: ").append(building.getBuildingName())
+                    .append(" (").append(roomNames.size() - bookedCount).append(" of ").append(roomNames.size())
+                    .append(" available)");
+            for (int i = 0; i < roomNames.size(); i++) {
+                entry.append("\n    ").append(roomNames.get(i)).append(" - ")
+                        .append(isBooked(booked, i) ? "Booked" : "Available");
+            }
+            entries.add(entry.toString());
+        }
+        return entries;
+    }
+
+    /**
+     * @return true if the replica shows the room as booked, false if it is free or unknown.
+     */
+    public synchronized boolean isBooked(int buildingId, int roomIndex) {
+        BuildingAvailability building = buildings.get(buildingId);
+        return building != null && roomIndex >= 0 && roomIndex < building.getRoomNames().size()
+                && isBooked(building.getBookedRooms(), roomIndex);
+    }
+
+    private synchronized boolean beginResync() {
+        synced = false;
+        if (requesting) {
+            return false;
+        }
+        requesting = true;
+        return true;
+    }
+
+    /**
+     * Has to be called while holding the lock of the replica.
+     *
+     * @return false if the delta does not follow the replica, which then has to load a new state.
+     */
+    private boolean applyInOrder(AvailabilityDelta delta) {
+        if (!delta.getStream().equals(stream)) {
+            return false;
+        }
+        if (delta.getSequence() <= sequence) {
+            // Already contained in the loaded state
+            return true;
+        }
+        if (delta.getSequence() != sequence + 1) {
+            return false;
+        }
+        BuildingAvailability building = buildings.get(delta.getBuildingId());
+        if (delta.getRoomIndex() == AvailabilityDelta.BUILDING_ADDED) {
+            // The names of a new building's rooms only come with a state
+            if (building == null) {
+                return false;
+            }
+            sequence = delta.getSequence();
+            return true;
+        }
+        if (building == null || delta.getRoomIndex() < 0 || delta.getRoomIndex() >= building.getRoomNames().size()) {
+            return false;
+        }
+        long[] booked = building.getBookedRooms();
+        int word = delta.getRoomIndex() >>> 6;
+        long bit = 1L << delta.getRoomIndex();
+        booked[word] = delta.isBooked() ? booked[word] | bit : booked[word] & ~bit;
+        sequence = delta.getSequence();
+        return true;
+    }
+
+    private static boolean isBooked(long[] booked, int roomIndex) {
+        int word = roomIndex >>> 6;
+        return word < booked.length && (booked[word] & (1L << roomIndex)) != 0;
+    }
+}
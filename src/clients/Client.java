@@ -4,14 +4,33 @@ import props.*;
 import rabbitMQ.*;
 import reservations.Reservation;
 import reservations.ReservationManager;
+import tracing.Span;
+import tracing.Tracer;
 
 
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
+/**
+ * Sends the requests of a user to the RentalAgent. Every request carries a correlation ID and the address of the
+ * client's own reply queue, and returns a future completed with the reply, so a client can keep many requests in
+ * flight. A request fails with a timeout after {@code booking.client.timeoutMillis} (default 10000) milliseconds.
+ */
 public class Client {
+    private static final long TIMEOUT_MILLIS = Long.getLong("booking.client.timeoutMillis", 10000);
+
     private final String username;
     private final Sender sender;
     private final Receiver receiver;
+    private final String replyQueue;
+    private final PendingReplies pendingReplies;
+    /**
+     * Created on first use rather than in the constructor, which must not hand out {@code this}.
+     */
+    private AvailabilityReplica availability;
 
     public final String ANSI_GREEN = "\u001B[32m";
     public final String ANSI_RESET = "\u001B[0m";
@@ -21,14 +40,18 @@ public class Client {
         this.username = username;
         this.sender = new Sender();
         this.receiver = new Receiver();
+        // The queue name is its routing key, and the random part keeps two clients of the same user apart
+        this.replyQueue = RoutingConfig.CLIENT_REPLY_QUEUE.getValue() + "." + username + "."
+                + Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+        this.pendingReplies = new PendingReplies(replyQueue, TIMEOUT_MILLIS);
     }
 
     /**
-     * Begins listening for responses in CLIENT_RESPONSE_QUEUE.
+     * Begins listening for replies on the reply queue of this client. Has to be called before the first request.
      */
     public void startListening() throws Exception {
         try {
-            receiver.receiveDirectMessage(RoutingConfig.CLIENT_QUEUE.getValue(), RoutingConfig.CLIENT_KEY.getValue(), this::handleReceivedMessage);
+            receiver.receiveDirectMessage(replyQueue, replyQueue, this::handleReply);
             startListeningToFanout();
 
         } catch (Exception e) {
@@ -47,6 +70,58 @@ public class Client {
         }
     }
 
+    /**
+     * Subscribes to the changes of all rooms. The client binds its own queue to the availability fanout exchange,
+     * then loads the current state and keeps it up to date in {@link #getAvailability()}.
+     */
+    public void subscribeToAvailability() {
+        String notificationQueue = RoutingConfig.CLIENT_NOTIFICATION_QUEUE.getValue() + "." + username + "."
+                + Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+        try {
+            // Bound before the state is requested, so no delta published after the state is missed
+            Receiver.receiveFanoutMessage(RabbitMQExchanges.FANOUT_AVAILABILITY, notificationQueue, this::handleAvailabilityMessage);
+            getAvailability().resync();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return The replica of which rooms are booked, up to date once {@link #subscribeToAvailability()} was called and
+     * the state was loaded.
+     */
+    public synchronized AvailabilityReplica getAvailability() {
+        if (availability == null) {
+            availability = new AvailabilityReplica(this::requestAvailabilityState);
+        }
+        return availability;
+    }
+
+    private void handleAvailabilityMessage(Message message) {
+        if (message.getType() == MessageType.ROOM_STATE_CHANGED) {
+            getAvailability().apply((AvailabilityDelta) message.getPayload());
+        }
+    }
+
+    private void requestAvailabilityState() {
+        request(new Message(MessageType.SUBSCRIBE_AVAILABILITY, null)).whenComplete((reply, error) -> {
+            if (error == null && reply.getType() == MessageType.AVAILABILITY_SNAPSHOT) {
+                getAvailability().load((AvailabilityState) reply.getPayload());
+            } else {
+                getAvailability().loadFailed();
+                printRed("Could not load the availability of the rooms.");
+            }
+        });
+    }
+
+    /**
+     * Prints the buildings and rooms as seen by the availability replica.
+     */
+    public void printAvailability() {
+        System.out.println("Available buildings and rooms:");
+        getAvailability().describeBuildings().forEach(System.out::println);
+    }
+
     /**
      * Handles received fanout messages.
      *
@@ -62,11 +137,22 @@ public class Client {
 
 
     /**
-     * Handles different types of received messages.
+     * Completes the request a reply belongs to. Replies that arrive after their request timed out are printed.
+     *
+     * @param message Message received on the reply queue.
+     */
+    private void handleReply(Message message) {
+        if (!pendingReplies.complete(message)) {
+            printReply(message);
+        }
+    }
+
+    /**
+     * Prints a reply of the RentalAgent.
      *
-     * @param message Message received from the queue.
+     * @param message The reply to a request of this client.
      */
-    private void handleReceivedMessage(Message message) {
+    public void printReply(Message message) {
             switch (message.getType()) {
                 case MessageType.RESPONSE_BUILDINGS:
                     printAvailableBuildings(message);
@@ -77,6 +163,9 @@ public class Client {
                 case MessageType.RESERVATION_NUMBER:
                     printGreen("Your Reservation Number is: " + message.getPayload());
                     break;
+                case MessageType.ALREADY_BOOKED:
+                    printRed(message.getPayload() + " Pick another room or time");
+                    break;
                 case MessageType.ROOM_NOT_FOUND:
                     printRed(message.getPayload() + " Input a valid room");
                     break;
@@ -89,6 +178,21 @@ public class Client {
                 case MessageType.RESERVATION_CANCELLED:
                     printRed(message.getPayload().toString());
                     break;
+                case MessageType.RESERVATION_FAILED:
+                    printRed(message.getPayload().toString());
+                    break;
+                case MessageType.RESERVATION_CANT_FOUND:
+                    printRed(message.getPayload().toString());
+                    break;
+                case MessageType.BATCH_RESULT:
+                    printBatchResult(message);
+                    break;
+                case MessageType.AVAILABILITY_PAGE:
+                    printAvailabilityPage((AvailabilityPage) message.getPayload());
+                    break;
+                case MessageType.INVALID_QUERY:
+                    printRed(message.getPayload().toString());
+                    break;
             }
     }
 
@@ -97,12 +201,73 @@ public class Client {
      *
      * @param buildingName The name of the building where the reservation is requested.
      * @param roomName     The name of the room to be reserved.
-     * @throws Exception If there is an error in sending the reservation request message.
+     * @return A future completed with the reservation number, or with the reason the room could not be reserved.
+     */
+    public CompletableFuture<Message> makeReservation(String buildingName, String roomName) {
+        return makeReservation(buildingName, roomName, ReservationRequest.OPEN_START, ReservationRequest.OPEN_END);
+    }
+
+    /**
+     * Sends a reservation request for a time slot of a specific building and room to the RentalAgent.
+     *
+     * @param buildingName The name of the building where the reservation is requested.
+     * @param roomName     The name of the room to be reserved.
+     * @param startTime    Start of the time slot in epoch milliseconds, inclusive.
+     * @param endTime      End of the time slot in epoch milliseconds, exclusive.
+     * @return A future completed with the reservation number, or with the reason the room could not be reserved.
+     */
+    public CompletableFuture<Message> makeReservation(String buildingName, String roomName, long startTime, long endTime) {
+        return request(new Message(MessageType.MAKE_RESERVATION,
+                new ReservationRequest(username, buildingName, roomName, null, startTime, endTime)));
+    }
+
+    /**
+     * Sends many reservation requests to the RentalAgent at once. The requests only need building, room and time slot.
+     *
+     * @param requests     The rooms to be reserved.
+     * @param allOrNothing If true, either every room is reserved or none.
+     * @return A future completed with the result of each reservation, in the order of the requests.
+     */
+    public CompletableFuture<Message> makeReservations(List<ReservationRequest> requests, boolean allOrNothing) {
+        for (ReservationRequest request : requests) {
+            request.setUsername(username);
+        }
+        return request(new Message(MessageType.MAKE_RESERVATION_BATCH, new ReservationBatch(username, allOrNothing, requests)));
+    }
+
+    /**
+     * Requests cancellation of many reservations at once.
+     *
+     * @param reservationNumbers The numbers of the reservations to be cancelled.
+     * @param allOrNothing       If true, nothing is cancelled unless every reservation exists.
+     * @return A future completed with the result of each cancellation, in the order of the numbers.
      */
-    public void makeReservation(String buildingName, String roomName) throws Exception {
-        sender.sendDirectMessage(RoutingConfig.RENTAL_AGENT_QUEUE.getValue(),
-                RoutingConfig.RENTAL_AGENT_KEY.getValue(),
-                new Message(MessageType.MAKE_RESERVATION, username + "," + buildingName + "," + roomName));
+    public CompletableFuture<Message> cancelReservations(List<String> reservationNumbers, boolean allOrNothing) {
+        List<ReservationRequest> requests = new ArrayList<>(reservationNumbers.size());
+        for (String reservationNumber : reservationNumbers) {
+            requests.add(new ReservationRequest(username, null, null, reservationNumber));
+        }
+        return request(new Message(MessageType.CANCEL_RESERVATION_BATCH, new ReservationBatch(username, allOrNothing, requests)));
+    }
+
+    /**
+     * Prints the result of each reservation of a batch, successful ones in green and failed ones in red.
+     *
+     * @param message The message containing the results of the batch.
+     */
+    private void printBatchResult(Message message) {
+        for (ReservationResult result : ((ReservationBatchResult) message.getPayload()).getResults()) {
+            ReservationRequest request = result.getRequest();
+            String reservation = request.getBuildingName() != null
+                    ? request.getBuildingName() + " " + request.getRoomName() : request.getReservationNumber();
+            if (result.getStatus() == MessageType.RESERVATION_NUMBER) {
+                printGreen(reservation + ": Your Reservation Number is: " + result.getDetail());
+            } else if (result.isSuccessful()) {
+                printGreen(reservation + ": " + result.getDetail());
+            } else {
+                printRed(reservation + ": " + result.getDetail());
+            }
+        }
     }
 
     /**
@@ -120,22 +285,18 @@ public class Client {
      * Requests cancellation of an existing reservation identified by the reservation number.
      *
      * @param reservationNumber The unique number of the reservation to be cancelled.
+     * @return A future completed with the reply of the building, or with the reason the reservation was not cancelled.
      */
-    public void cancelReservation(String reservationNumber){
-        try {
-            sender.sendDirectMessage(RoutingConfig.RENTAL_AGENT_QUEUE.getValue(),
-                    RoutingConfig.RENTAL_AGENT_KEY.getValue(),
-                    new Message(MessageType.CANCEL_RESERVATION, reservationNumber));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    public CompletableFuture<Message> cancelReservation(String reservationNumber){
+        return request(new Message(MessageType.CANCEL_RESERVATION,
+                new ReservationRequest(username, null, null, reservationNumber)));
     }
 
     /**
      * Prints the reservations of the user in a structured format.
      */
     public Boolean viewMyReservations() {
-        List<Reservation> myReservations = ReservationManager.getReservationsByUser(this.username);
+        List<Reservation> myReservations = getMyReservations();
         if (myReservations.isEmpty()) {
             printRed("There is no reservation that is issued with your username.");
             return false;
@@ -148,14 +309,75 @@ public class Client {
         }
     }
 
+    /**
+     * @return The reservations of the user in the order they were made.
+     */
+    public List<Reservation> getMyReservations() {
+        return ReservationManager.getReservationsByUser(this.username);
+    }
+
     /**
      * Requests the list of available buildings from the RentalAgent.
+     *
+     * @return A future completed with the list of buildings.
+     */
+    public CompletableFuture<Message> requestListOfBuildings() {
+        return request(new Message(MessageType.REQUEST_BUILDINGS, null));
+    }
+
+    /**
+     * Queries the rooms of the buildings matching the query page by page. Each page is requested with the cursor of the
+     * previous one once it was passed to the consumer, so neither side holds more than one page of the result.
+     *
+     * @param query        The filters and page size of the query, from its first page on.
+     * @param pageConsumer Is called with each page in order.
+     * @return A future completed with the reply of the last page, or with the reason the query was refused.
+     */
+    public CompletableFuture<Message> queryAvailability(AvailabilityQuery query, Consumer<AvailabilityPage> pageConsumer) {
+        return request(new Message(MessageType.QUERY_AVAILABILITY, query)).thenCompose(reply -> {
+            if (reply.getType() != MessageType.AVAILABILITY_PAGE) {
+                return CompletableFuture.completedFuture(reply);
+            }
+            AvailabilityPage page = (AvailabilityPage) reply.getPayload();
+            pageConsumer.accept(page);
+            if (page.isLast()) {
+                return CompletableFuture.completedFuture(reply);
+            }
+            return queryAvailability(new AvailabilityQuery(query.getBuildingNames(), query.getBuildingNamePrefix(),
+                    query.isFreeOnly(), query.getMinFreeRooms(), query.getPageSize(), page.getNextCursor()), pageConsumer);
+        });
+    }
+
+    /**
+     * Prints the rooms of one page of an availability query.
+     *
+     * @param page The page received from the RentalAgent.
+     */
+    public void printAvailabilityPage(AvailabilityPage page) {
+        for (RoomStatus room : page.getRooms()) {
+            if (room.isBooked()) {
+                printRed(room.toString());
+            } else {
+                printGreen(room.toString());
+            }
+        }
+    }
+
+    /**
+     * Sends a request to the RentalAgent. If the request is sampled for tracing, its trace lasts until the reply
+     * arrived.
+     *
+     * @param message The request.
+     * @return A future completed with the reply.
      */
-    public void requestListOfBuildings() throws Exception {
-        Message requestMessage = new Message(MessageType.REQUEST_BUILDINGS, null);
-        sender.sendDirectMessage(RoutingConfig.RENTAL_AGENT_QUEUE.getValue(),
-                RoutingConfig.RENTAL_AGENT_KEY.getValue(),
-                requestMessage);
+    private CompletableFuture<Message> request(Message message) {
+        Span trace = Tracer.startTrace("CLIENT", message);
+        CompletableFuture<Message> reply = sender.sendRequest(RoutingConfig.RENTAL_AGENT_QUEUE.getValue(),
+                RoutingConfig.RENTAL_AGENT_KEY.getValue(), message, pendingReplies);
+        if (trace != null) {
+            reply.whenComplete((received, error) -> Tracer.endSpan(trace));
+        }
+        return reply;
     }
 
     /**
@@ -183,9 +405,12 @@ public class Client {
      * @return A string representation of the reservation.
      */
     private String convertReservationToString(Reservation reservation) {
+        String time = reservation.isOpenEnded() ? "Until cancelled"
+                : Instant.ofEpochMilli(reservation.getStartTime()) + " - " + Instant.ofEpochMilli(reservation.getEndTime());
         return "*Reservation Number: " + reservation.getReservationNumber() +
                 "\n- Building: " + reservation.getBuildingName() +
                 "\n- Room: " + reservation.getRoomName() +
+                "\n- Time: " + time +
                 "\n- Status: " + reservation.getStatus();
     }
 
@@ -0,0 +1,424 @@
+package loadtest;
+
+import buildings.Building;
+import buildings.BuildingManager;
+import buildings.ConferenceRoom;
+import buildings.RoomStateListener;
+import clients.Client;
+import metrics.LatencyHistogram;
+import props.Message;
+import props.MessageType;
+import props.ReservationRequest;
+import rentalAgents.RentalAgent;
+import reservations.ReservationManager;
+import tracing.Span;
+import tracing.Tracer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the system without a user: simulated clients perform a mix of list, reserve, cancel and view operations
+ * while the latency of each operation is recorded, and afterwards the reservations are checked for double bookings.
+ * <p>
+ * Operations arrive open-loop: their start times follow a Poisson process with the configured rate and do not wait
+ * for earlier operations to finish, like independent users would. Latency is measured from the planned start, so
+ * time an operation spent waiting behind a slow system is counted instead of hidden.
+ */
+public class LoadGenerator {
+    private static final long SLOT_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long BUILDING_WAIT_MILLIS = 30000;
+    private static final int MAX_REPORTED_DOUBLE_BOOKINGS = 10;
+
+    private final LoadProfile profile;
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Outcomes> outcomes = new EnumMap<>(Operation.class);
+    private final LatencyHistogram startDelays = new LatencyHistogram();
+    private final AtomicLong outstanding = new AtomicLong();
+    private final ExecutorService viewExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<LoadClient> clients = new ArrayList<>();
+    private final List<String[]> rooms = new ArrayList<>();
+    private final Operation[] operationByTicket;
+    private long firstSlot;
+
+    public LoadGenerator(LoadProfile profile) {
+        this.profile = profile;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            outcomes.put(operation, new Outcomes());
+        }
+        // One ticket per unit of weight, so picking an operation is one random index
+        List<Operation> tickets = new ArrayList<>();
+        profile.getMix().forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                tickets.add(operation);
+            }
+        });
+        operationByTicket = tickets.toArray(new Operation[0]);
+    }
+
+    /**
+     * Registers the missing buildings, runs the load and prints the report. The RentalAgent and BuildingManager have
+     * to be listening already.
+     *
+     * @param rentalAgent Used to register buildings.
+     * @return true if no room was double booked.
+     */
+    public boolean run(RentalAgent rentalAgent) throws Exception {
+        prepareBuildings(rentalAgent);
+        for (int i = 1; i <= profile.getClients(); i++) {
+            Client client = new Client("load-" + i);
+            client.startListening();
+            clients.add(new LoadClient(client));
+        }
+        firstSlot = (System.currentTimeMillis() / SLOT_MILLIS + 24) * SLOT_MILLIS;
+
+        System.out.println("Running " + profile);
+        long started = System.nanoTime();
+        generate(started, started + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds()));
+        awaitOutstanding();
+        long elapsed = System.nanoTime() - started;
+        viewExecutor.shutdown();
+
+        printReport(elapsed);
+        if (Tracer.SAMPLE_RATE > 0) {
+            printHops(Tracer.getSpans());
+        }
+        return checkDoubleBookings();
+    }
+
+    /**
+     * Registers buildings until the profile's number exist and waits until they can be found.
+     */
+    private void prepareBuildings(RentalAgent rentalAgent) throws InterruptedException {
+        int missing = profile.getBuildings() - BuildingManager.getBuildings().size();
+        if (missing > 0) {
+            CountDownLatch added = new CountDownLatch(missing);
+            RoomStateListener listener = new RoomStateListener() {
+                @Override
+                public void roomStateChanged(int buildingId, int roomIndex, boolean booked) {
+                }
+
+                @Override
+                public void buildingAdded(int buildingId) {
+                    added.countDown();
+                }
+            };
+            BuildingManager.addRoomStateListener(listener);
+            try {
+                for (int i = 0; i < missing; i++) {
+                    rentalAgent.registerBuilding(profile.getRoomsPerBuilding());
+                }
+                if (!added.await(BUILDING_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    throw new IllegalStateException("Only " + (missing - added.getCount()) + " of " + missing
+                            + " buildings were created in time");
+                }
+            } finally {
+                // Otherwise every booking of the run would still call it
+                BuildingManager.removeRoomStateListener(listener);
+            }
+        }
+        for (Building building : BuildingManager.getBuildings()) {
+            for (ConferenceRoom room : building.getRooms()) {
+                rooms.add(new String[]{building.getBuildingName(), room.getRoomName()});
+            }
+        }
+    }
+
+    /**
+     * Starts operations at their planned times until the end. Runs on the calling thread, which only waits for the
+     * next planned start; the operations themselves complete on the clients' reply threads.
+     */
+    private void generate(long start, long end) {
+        Random random = new Random();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / profile.getRate();
+        long planned = start;
+        while (planned < end) {
+            long now;
+            while ((now = System.nanoTime()) < planned) {
+                LockSupport.parkNanos(planned - now);
+            }
+            startDelays.record(now - planned);
+            LoadClient client = clients.get(random.nextInt(clients.size()));
+            start(client, operationByTicket[random.nextInt(operationByTicket.length)], planned);
+            // Exponential gaps between starts make the arrivals a Poisson process
+            planned += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+        }
+    }
+
+    private void start(LoadClient client, Operation operation, long planned) {
+        outstanding.incrementAndGet();
+        try {
+            switch (operation) {
+                case LIST:
+                    track(operation, planned, client.client.requestListOfBuildings(), MessageType.RESPONSE_BUILDINGS);
+                    break;
+                case CANCEL:
+                    Booking booking = client.takeBooking();
+                    if (booking != null) {
+                        cancel(client, booking, planned);
+                        break;
+                    }
+                    // Nothing to cancel yet, so the client reserves instead
+                    reserve(client, planned);
+                    break;
+                case RESERVE:
+                    reserve(client, planned);
+                    break;
+                case VIEW:
+                    CompletableFuture.runAsync(client.client::getMyReservations, viewExecutor)
+                            .whenComplete((result, error) -> finished(Operation.VIEW, planned, error == null, error));
+                    break;
+            }
+        } catch (Exception e) {
+            finished(operation, planned, false, e);
+        }
+    }
+
+    private void reserve(LoadClient client, long planned) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] room = rooms.get(random.nextInt(rooms.size()));
+        long startTime = firstSlot + random.nextInt(profile.getSlots()) * SLOT_MILLIS;
+        client.client.makeReservation(room[0], room[1], startTime, startTime + SLOT_MILLIS).whenComplete((reply, error) -> {
+            boolean confirmed = error == null && reply.getType() == MessageType.RESERVATION_NUMBER;
+            if (confirmed) {
+                client.addBooking(new Booking((String) reply.getPayload(), room[0], room[1], startTime, startTime + SLOT_MILLIS));
+            }
+            finished(Operation.RESERVE, planned, confirmed, error);
+        });
+    }
+
+    private void cancel(LoadClient client, Booking booking, long planned) {
+        client.client.cancelReservation(booking.reservationNumber).whenComplete((reply, error) -> {
+            boolean cancelled = error == null && reply.getType() == MessageType.RESERVATION_CANCELLED;
+            // A booking whose cancellation timed out may or may not still exist, so it is left out of the check
+            if (error == null && !cancelled) {
+                client.addBooking(booking);
+            }
+            finished(Operation.CANCEL, planned, cancelled, error);
+        });
+    }
+
+    private void track(Operation operation, long planned, CompletableFuture<Message> reply, MessageType expected) {
+        reply.whenComplete((message, error) ->
+                finished(operation, planned, error == null && message.getType() == expected, error));
+    }
+
+    private void finished(Operation operation, long planned, boolean successful, Throwable error) {
+        latencies.get(operation).record(System.nanoTime() - planned);
+        Outcomes result = outcomes.get(operation);
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            result.timedOut.increment();
+        } else if (cause != null) {
+            result.failed.increment();
+        } else if (successful) {
+            result.succeeded.increment();
+        } else {
+            result.refused.increment();
+        }
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (outstanding) {
+                outstanding.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every started operation completed. Requests time out in the clients, so this ends.
+     */
+    private void awaitOutstanding() throws InterruptedException {
+        synchronized (outstanding) {
+            while (outstanding.get() > 0) {
+                outstanding.wait();
+            }
+        }
+    }
+
+    private void printReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-8s %9s %9s %9s %9s %9s %10s %10s %10s %10s %10s%n", "op", "count", "ok", "refused",
+                "timeout", "error", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            Outcomes result = outcomes.get(operation);
+            long count = histogram.getCount();
+            total += count;
+            System.out.printf("%-8s %9d %9d %9d %9d %9d %10.1f %10.2f %10.2f %10.2f %10.2f%n", operation, count,
+                    result.succeeded.sum(), result.refused.sum(), result.timedOut.sum(), result.failed.sum(),
+                    count / seconds, millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMax()));
+        }
+        System.out.printf("Completed %d operations in %.1f s (%.1f ops/s). Start delay p99 %.2f ms, max %.2f ms.%n",
+                total, seconds, total / seconds, millis(startDelays.getValueAtPercentile(99)), millis(startDelays.getMax()));
+    }
+
+    /**
+     * Prints how long traced messages waited and were handled at each kind of hop. Queues of the same kind, like the
+     * partitions of the buildings or the reply queues of the clients, are counted together.
+     */
+    private void printHops(List<Span> spans) {
+        Map<String, LatencyHistogram[]> hops = new TreeMap<>();
+        for (Span span : spans) {
+            int end = span.getName().indexOf('.');
+            String hop = (end < 0 ? span.getName() : span.getName().substring(0, end)) + " " + span.getMessageType();
+            LatencyHistogram[] timings = hops.computeIfAbsent(hop,
+                    key -> new LatencyHistogram[]{new LatencyHistogram(), new LatencyHistogram()});
+            timings[0].record(TimeUnit.MICROSECONDS.toNanos(span.getQueueWaitMicros()));
+            timings[1].record(TimeUnit.MICROSECONDS.toNanos(span.getDurationMicros()));
+        }
+        System.out.printf("%-48s %7s %12s %12s %12s %12s%n", "hop", "spans", "wait p50 ms", "wait p99 ms",
+                "handle p50 ms", "handle p99 ms");
+        hops.forEach((hop, timings) -> System.out.printf("%-48s %7d %12.2f %12.2f %12.2f %12.2f%n", hop,
+                timings[0].getCount(), millis(timings[0].getValueAtPercentile(50)),
+                millis(timings[0].getValueAtPercentile(99)), millis(timings[1].getValueAtPercentile(50)),
+                millis(timings[1].getValueAtPercentile(99))));
+        if (Tracer.getOverwrittenSpanCount() > 0) {
+            System.out.println("Only the last " + spans.size() + " spans were kept; raise booking.tracing.bufferSize"
+                    + " to see all of them.");
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Checks that no two reservations of a room overlap, both in the bookings the clients were confirmed and in the
+     * reservations the system holds.
+     *
+     * @return true if no room is double booked.
+     */
+    private boolean checkDoubleBookings() {
+        List<Booking> confirmed = new ArrayList<>();
+        for (LoadClient client : clients) {
+            confirmed.addAll(client.getBookings());
+        }
+        List<Booking> stored = new ArrayList<>();
+        ReservationManager.forEachReservation(reservation -> stored.add(new Booking(reservation.getReservationNumber(),
+                reservation.getBuildingName(), reservation.getRoomName(), reservation.getStartTime(), reservation.getEndTime())));
+
+        List<String> doubleBookings = findOverlaps(confirmed);
+        doubleBookings.addAll(findOverlaps(stored));
+        if (doubleBookings.isEmpty()) {
+            System.out.println("No double bookings among " + confirmed.size() + " confirmed and " + stored.size()
+                    + " stored reservations.");
+            return true;
+        }
+        System.out.println(doubleBookings.size() + " double bookings found:");
+        doubleBookings.stream().limit(MAX_REPORTED_DOUBLE_BOOKINGS).forEach(System.out::println);
+        return false;
+    }
+
+    static List<String> findOverlaps(List<Booking> bookings) {
+        Map<String, List<Booking>> bookingsByRoom = new HashMap<>();
+        for (Booking booking : bookings) {
+            if (booking.buildingName != null) {
+                bookingsByRoom.computeIfAbsent(booking.roomKey(), key -> new ArrayList<>()).add(booking);
+            }
+        }
+        List<String> overlaps = new ArrayList<>();
+        for (List<Booking> roomBookings : bookingsByRoom.values()) {
+            roomBookings.sort(Comparator.comparingLong(booking -> booking.startTime));
+            Booking latestEnding = null;
+            for (Booking booking : roomBookings) {
+                if (latestEnding != null && booking.startTime < latestEnding.endTime) {
+                    overlaps.add(latestEnding + " overlaps " + booking);
+                }
+                if (latestEnding == null || booking.endTime > latestEnding.endTime) {
+                    latestEnding = booking;
+                }
+            }
+        }
+        return overlaps;
+    }
+
+    /**
+     * A simulated client and the bookings it was confirmed and has not cancelled.
+     */
+    private static class LoadClient {
+        private final Client client;
+        private final List<Booking> bookings = new ArrayList<>();
+
+        LoadClient(Client client) {
+            this.client = client;
+        }
+
+        synchronized List<Booking> getBookings() {
+            return new ArrayList<>(bookings);
+        }
+
+        synchronized void addBooking(Booking booking) {
+            bookings.add(booking);
+        }
+
+        /**
+         * Removes a random booking, so it cannot be cancelled twice.
+         *
+         * @return The booking, or null if the client has none.
+         */
+        synchronized Booking takeBooking() {
+            if (bookings.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(bookings.size());
+            Booking booking = bookings.get(index);
+            bookings.set(index, bookings.get(bookings.size() - 1));
+            bookings.remove(bookings.size() - 1);
+            return booking;
+        }
+    }
+
+    static class Booking {
+        private final String reservationNumber;
+        private final String buildingName;
+        private final String roomName;
+        private final long startTime;
+        private final long endTime;
+
+        Booking(String reservationNumber, String buildingName, String roomName, long startTime, long endTime) {
+            this.reservationNumber = reservationNumber;
+            this.buildingName = buildingName;
+            this.roomName = roomName;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        String roomKey() {
+            return (buildingName + '/' + roomName).toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public String toString() {
+            String time = startTime == ReservationRequest.OPEN_START && endTime == ReservationRequest.OPEN_END
+                    ? "until cancelled" : startTime + "-" + endTime;
+            return reservationNumber + " (" + buildingName + " " + roomName + ", " + time + ")";
+        }
+    }
+
+    private static class Outcomes {
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder refused = new LongAdder();
+        private final LongAdder timedOut = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+    }
+}
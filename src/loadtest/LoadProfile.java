@@ -0,0 +1,123 @@
+package loadtest;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings of a load test run, read from system properties:
+ * <ul>
+ *     <li>{@code booking.load.clients}: simulated clients, default 50.</li>
+ *     <li>{@code booking.load.rate}: operations started per second by all clients together, default 500.</li>
+ *     <li>{@code booking.load.durationSeconds}: how long operations are started, default 30.</li>
+ *     <li>{@code booking.load.mix}: relative weights of the operations, default
+ *     {@code list:10,reserve:50,cancel:30,view:10}.</li>
+ *     <li>{@code booking.load.buildings} and {@code booking.load.roomsPerBuilding}: the buildings to book, default
+ *     10 with 5 rooms. Buildings that already exist count towards them.</li>
+ *     <li>{@code booking.load.slots}: the hour-long time slots a reservation picks from, default 24. Fewer slots make
+ *     more requests compete for the same slot.</li>
+ * </ul>
+ * Started with {@code --load}, the system runs without persistence unless {@code booking.persistence.enabled} is
+ * set, so every run starts empty.
+ */
+public class LoadProfile {
+    private final int clients;
+    private final double rate;
+    private final int durationSeconds;
+    private final Map<Operation, Integer> mix;
+    private final int buildings;
+    private final int roomsPerBuilding;
+    private final int slots;
+
+    public LoadProfile(int clients, double rate, int durationSeconds, Map<Operation, Integer> mix, int buildings,
+                       int roomsPerBuilding, int slots) {
+        if (clients < 1 || rate <= 0 || durationSeconds < 1 || buildings < 1 || roomsPerBuilding < 1 || slots < 1) {
+            throw new IllegalArgumentException("Clients, rate, duration, buildings, rooms and slots must be positive");
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The operation mix needs at least one positive weight: " + mix);
+        }
+        this.clients = clients;
+        this.rate = rate;
+        this.durationSeconds = durationSeconds;
+        this.mix = new EnumMap<>(mix);
+        this.buildings = buildings;
+        this.roomsPerBuilding = roomsPerBuilding;
+        this.slots = slots;
+    }
+
+    /**
+     * Creates the profile from the {@code booking.load.*} system properties.
+     *
+     * @throws IllegalArgumentException If a property has an invalid value.
+     */
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile(Integer.getInteger("booking.load.clients", 50),
+                Double.parseDouble(System.getProperty("booking.load.rate", "500")),
+                Integer.getInteger("booking.load.durationSeconds", 30),
+                parseMix(System.getProperty("booking.load.mix", "list:10,reserve:50,cancel:30,view:10")),
+                Integer.getInteger("booking.load.buildings", 10),
+                Integer.getInteger("booking.load.roomsPerBuilding", 5),
+                Integer.getInteger("booking.load.slots", 24));
+    }
+
+    /**
+     * Parses weights like {@code list:10,reserve:50}. Operations that are not listed get weight 0.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid operation weight: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative operation weight: " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        return weights;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+
+    public int getBuildings() {
+        return buildings;
+    }
+
+    public int getRoomsPerBuilding() {
+        return roomsPerBuilding;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadProfile{" +
+                "clients:" + clients +
+                ", rate:" + rate + "/s" +
+                ", duration:" + durationSeconds + "s" +
+                ", mix:" + mix +
+                ", buildings:" + buildings +
+                ", roomsPerBuilding:" + roomsPerBuilding +
+                ", slots:" + slots +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package loadtest;
+
+/**
+ * The operations a simulated client performs.
+ */
+public enum Operation {
+    /**
+     * Requests the list of buildings from the RentalAgent.
+     */
+    LIST,
+    /**
+     * Reserves a random time slot of a random room.
+     */
+    RESERVE,
+    /**
+     * Cancels one of the client's own reservations, or reserves if it has none.
+     */
+    CANCEL,
+    /**
+     * Reads the client's own reservations.
+     */
+    VIEW
+}
@@ -0,0 +1,171 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import props.MessageType;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Registry of the {@link MessageStats} of every queue and message type the transports published or consumed. Looking
+ * up the stats of a known pair is one map read and one array read, so the transports do it for every message.
+ * <p>
+ * Each stats object is registered as an MXBean named {@code booking:type=MessageStats,queue=...,messageType=...}
+ * when it is created, unless {@code booking.metrics.jmx} is false. {@link #start()} additionally serves all metrics as
+ * plain text when {@code booking.metrics.port} is set. Setting {@code booking.metrics.enabled} to false turns off the
+ * recording in the transports.
+ */
+public class MessageMetrics {
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("booking.metrics.enabled", "true"));
+    private static final boolean JMX = Boolean.parseBoolean(System.getProperty("booking.metrics.jmx", "true"));
+    private static final int PORT = Integer.getInteger("booking.metrics.port", 0);
+    /**
+     * Type of messages that could not be decoded.
+     */
+    static final String UNKNOWN_TYPE_NAME = "UNKNOWN";
+    private static final int UNKNOWN_TYPE = MessageType.values().length;
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private static final Map<String, AtomicReferenceArray<MessageStats>> statsByQueue = new ConcurrentHashMap<>();
+    private static HttpServer server;
+
+    /**
+     * Returns the stats of a message type on a queue, creating them on first use.
+     *
+     * @param queue The queue, or for messages published without one the exchange or routing key.
+     * @param type  The type of the messages, or null for messages that could not be decoded.
+     */
+    public static MessageStats of(String queue, MessageType type) {
+        AtomicReferenceArray<MessageStats> statsByType = statsByQueue.get(queue);
+        if (statsByType == null) {
+            statsByType = statsByQueue.computeIfAbsent(queue, name -> new AtomicReferenceArray<>(UNKNOWN_TYPE + 1));
+        }
+        int index = type == null ? UNKNOWN_TYPE : type.ordinal();
+        MessageStats stats = statsByType.get(index);
+        if (stats == null) {
+            MessageStats created = new MessageStats(queue, type);
+            if (statsByType.compareAndSet(index, null, created)) {
+                register(created);
+                return created;
+            }
+            stats = statsByType.get(index);
+        }
+        return stats;
+    }
+
+    /**
+     * @return The stats of all queues and message types, ordered by queue and type.
+     */
+    public static List<MessageStats> getAll() {
+        List<MessageStats> all = new ArrayList<>();
+        for (AtomicReferenceArray<MessageStats> statsByType : statsByQueue.values()) {
+            for (int i = 0; i < statsByType.length(); i++) {
+                MessageStats stats = statsByType.get(i);
+                if (stats != null) {
+                    all.add(stats);
+                }
+            }
+        }
+        all.sort(Comparator.comparing(MessageStats::getQueue).thenComparing(MessageStats::getMessageType));
+        return all;
+    }
+
+    /**
+     * Starts serving the metrics on {@code booking.metrics.port} of the loopback address, if the port is set.
+     */
+    public static synchronized void start() {
+        if (server != null || PORT <= 0) {
+            return;
+        }
+        try {
+            server = MetricsEndpoint.start(PORT);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void register(MessageStats stats) {
+        if (!JMX) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("booking:type=MessageStats,queue=" + ObjectName.quote(stats.getQueue())
+                    + ",messageType=" + stats.getMessageType());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, name);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text format: counters per queue and type, and the timings as summaries in
+     * seconds with their 50th, 99th and 99.9th percentile.
+     */
+    public static String toText() {
+        List<MessageStats> all = getAll();
+        StringBuilder text = new StringBuilder();
+        appendCounter(text, all, "booking_messages_published_total", MessageStats::getPublished);
+        appendCounter(text, all, "booking_message_bytes_published_total", MessageStats::getPublishedBytes);
+        appendCounter(text, all, "booking_message_publish_errors_total", MessageStats::getPublishErrors);
+        appendCounter(text, all, "booking_messages_received_total", MessageStats::getReceived);
+        appendCounter(text, all, "booking_message_bytes_received_total", MessageStats::getReceivedBytes);
+        appendCounter(text, all, "booking_message_receive_errors_total", MessageStats::getReceiveErrors);
+        appendCounter(text, all, "booking_messages_handled_total", MessageStats::getHandled);
+        appendCounter(text, all, "booking_message_handler_errors_total", MessageStats::getHandlerErrors);
+        appendSummary(text, all, "booking_message_serialize_seconds", MessageStats.SERIALIZE);
+        appendSummary(text, all, "booking_message_deserialize_seconds", MessageStats.DESERIALIZE);
+        appendSummary(text, all, "booking_message_handler_seconds", MessageStats.HANDLER);
+        return text.toString();
+    }
+
+    private static void appendCounter(StringBuilder text, List<MessageStats> all, String name,
+                                      ToLongFunction<MessageStats> value) {
+        text.append("# TYPE ").append(name).append(" counter\n");
+        for (MessageStats stats : all) {
+            text.append(name).append(labels(stats, null)).append(' ').append(value.applyAsLong(stats)).append('\n');
+        }
+    }
+
+    private static void appendSummary(StringBuilder text, List<MessageStats> all, String name, int kind) {
+        text.append("# TYPE ").append(name).append(" summary\n");
+        for (MessageStats stats : all) {
+            LatencyHistogram histogram = stats.getTiming(kind);
+            if (histogram == null) {
+                continue;
+            }
+            for (double quantile : QUANTILES) {
+                appendSample(text, name, labels(stats, quantile), histogram,
+                        h -> h.getValueAtPercentile(quantile * 100) / 1e9);
+            }
+            appendSample(text, name + "_sum", labels(stats, null), histogram, h -> h.getSum() / 1e9);
+            text.append(name).append("_count").append(labels(stats, null)).append(' ').append(histogram.getCount())
+                    .append('\n');
+        }
+    }
+
+    private static void appendSample(StringBuilder text, String name, String labels, LatencyHistogram histogram,
+                                     ToDoubleFunction<LatencyHistogram> value) {
+        text.append(name).append(labels).append(' ').append(value.applyAsDouble(histogram)).append('\n');
+    }
+
+    private static String labels(MessageStats stats, Double quantile) {
+        StringBuilder labels = new StringBuilder("{queue=\"").append(escape(stats.getQueue()))
+                .append("\",type=\"").append(stats.getMessageType()).append('"');
+        if (quantile != null) {
+            labels.append(",quantile=\"").append(quantile).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
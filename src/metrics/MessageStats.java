@@ -0,0 +1,208 @@
+package metrics;
+
+import props.MessageType;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of one message type on one queue. Counters are striped {@link LongAdder}s and timings
+ * {@link LatencyHistogram}s, so recording never takes a lock. A histogram is only created once its first value is
+ * recorded, because most queues see either the publishing or the consuming side of a type, not both.
+ */
+public class MessageStats implements MessageStatsMXBean {
+    static final int SERIALIZE = 0;
+    static final int DESERIALIZE = 1;
+    static final int HANDLER = 2;
+
+    private final String queue;
+    private final MessageType type;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder publishedBytes = new LongAdder();
+    private final LongAdder publishErrors = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder receiveErrors = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder handlerErrors = new LongAdder();
+    private final AtomicReferenceArray<LatencyHistogram> timings = new AtomicReferenceArray<>(3);
+
+    MessageStats(String queue, MessageType type) {
+        this.queue = queue;
+        this.type = type;
+    }
+
+    /**
+     * Records a message that was handed to the transport.
+     *
+     * @param bytes          The size of the encoded message, or 0 if it was not encoded.
+     * @param serializeNanos How long encoding took, or a negative value if it was not encoded.
+     */
+    public void published(int bytes, long serializeNanos) {
+        published.increment();
+        publishedBytes.add(bytes);
+        if (serializeNanos >= 0) {
+            timing(SERIALIZE).record(serializeNanos);
+        }
+    }
+
+    /**
+     * Records a message that could not be encoded or was not accepted by the transport.
+     */
+    public void publishFailed() {
+        publishErrors.increment();
+    }
+
+    /**
+     * Records a message taken from the queue.
+     *
+     * @param bytes            The size of the encoded message, or 0 if it was not encoded.
+     * @param deserializeNanos How long decoding took, or a negative value if it was not decoded.
+     */
+    public void received(int bytes, long deserializeNanos) {
+        received.increment();
+        receivedBytes.add(bytes);
+        if (deserializeNanos >= 0) {
+            timing(DESERIALIZE).record(deserializeNanos);
+        }
+    }
+
+    /**
+     * Records a message taken from the queue that could not be decoded.
+     */
+    public void receiveFailed() {
+        receiveErrors.increment();
+    }
+
+    /**
+     * Records how long the consumer's callback took for a message.
+     *
+     * @param handlerNanos The duration of the callback.
+     * @param successful   false if the callback threw.
+     */
+    public void handled(long handlerNanos, boolean successful) {
+        handled.increment();
+        if (!successful) {
+            handlerErrors.increment();
+        }
+        timing(HANDLER).record(handlerNanos);
+    }
+
+    private LatencyHistogram timing(int kind) {
+        LatencyHistogram histogram = timings.get(kind);
+        if (histogram == null) {
+            timings.compareAndSet(kind, null, new LatencyHistogram());
+            histogram = timings.get(kind);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return The histogram of the given kind of timing, or null if nothing was recorded for it yet.
+     */
+    LatencyHistogram getTiming(int kind) {
+        return timings.get(kind);
+    }
+
+    private double micros(int kind, double percentile) {
+        LatencyHistogram histogram = timings.get(kind);
+        return histogram == null ? 0 : histogram.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    @Override
+    public String getQueue() {
+        return queue;
+    }
+
+    @Override
+    public String getMessageType() {
+        return type == null ? MessageMetrics.UNKNOWN_TYPE_NAME : type.name();
+    }
+
+    @Override
+    public long getPublished() {
+        return published.sum();
+    }
+
+    @Override
+    public long getPublishedBytes() {
+        return publishedBytes.sum();
+    }
+
+    @Override
+    public long getPublishErrors() {
+        return publishErrors.sum();
+    }
+
+    @Override
+    public long getReceived() {
+        return received.sum();
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public long getReceiveErrors() {
+        return receiveErrors.sum();
+    }
+
+    @Override
+    public long getHandled() {
+        return handled.sum();
+    }
+
+    @Override
+    public long getHandlerErrors() {
+        return handlerErrors.sum();
+    }
+
+    @Override
+    public double getSerializeMicrosP50() {
+        return micros(SERIALIZE, 50);
+    }
+
+    @Override
+    public double getSerializeMicrosP99() {
+        return micros(SERIALIZE, 99);
+    }
+
+    @Override
+    public double getDeserializeMicrosP50() {
+        return micros(DESERIALIZE, 50);
+    }
+
+    @Override
+    public double getDeserializeMicrosP99() {
+        return micros(DESERIALIZE, 99);
+    }
+
+    @Override
+    public double getHandlerMicrosMean() {
+        LatencyHistogram histogram = timings.get(HANDLER);
+        return histogram == null ? 0 : histogram.getMean() / 1e3;
+    }
+
+    @Override
+    public double getHandlerMicrosP50() {
+        return micros(HANDLER, 50);
+    }
+
+    @Override
+    public double getHandlerMicrosP99() {
+        return micros(HANDLER, 99);
+    }
+
+    @Override
+    public double getHandlerMicrosP999() {
+        return micros(HANDLER, 99.9);
+    }
+
+    @Override
+    public double getHandlerMicrosMax() {
+        LatencyHistogram histogram = timings.get(HANDLER);
+        return histogram == null ? 0 : histogram.getMax() / 1e3;
+    }
+}
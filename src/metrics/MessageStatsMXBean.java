@@ -0,0 +1,46 @@
+package metrics;
+
+/**
+ * The metrics of one message type on one queue as seen through JMX. Counters only grow; monitoring tools derive
+ * rates from two readings. Durations are in microseconds.
+ */
+public interface MessageStatsMXBean {
+
+    String getQueue();
+
+    String getMessageType();
+
+    long getPublished();
+
+    long getPublishedBytes();
+
+    long getPublishErrors();
+
+    long getReceived();
+
+    long getReceivedBytes();
+
+    long getReceiveErrors();
+
+    long getHandled();
+
+    long getHandlerErrors();
+
+    double getSerializeMicrosP50();
+
+    double getSerializeMicrosP99();
+
+    double getDeserializeMicrosP50();
+
+    double getDeserializeMicrosP99();
+
+    double getHandlerMicrosMean();
+
+    double getHandlerMicrosP50();
+
+    double getHandlerMicrosP99();
+
+    double getHandlerMicrosP999();
+
+    double getHandlerMicrosMax();
+}
@@ -0,0 +1,296 @@
+package persistence;
+
+import buildings.Building;
+import buildings.BuildingManager;
+import buildings.ConferenceRoom;
+import reservations.Reservation;
+import reservations.ReservationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Makes the reservation and building state survive restarts. Changes are recorded in a {@link WriteAheadLog} and
+ * the full state is written to a {@link SnapshotStore} periodically, after which the log segments it covers are deleted.
+ * On start the latest snapshot is loaded and the log after it is replayed. Buildings are restored in log order;
+ * reservation events are replayed in parallel lanes chosen by building, so the events of one building keep their order.
+ * Finally the room calendars are rebuilt from the recovered reservations.
+ * <p>
+ * Configured with the system properties {@code booking.persistence.enabled} (default true),
+ * {@code booking.persistence.dir} (default "booking-data"), {@code booking.persistence.segmentSize} in bytes,
+ * {@code booking.persistence.flushIntervalMillis} and {@code booking.persistence.snapshotIntervalSeconds}.
+ */
+public class PersistenceManager {
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("booking.persistence.enabled", "true"));
+    private static final Path DIRECTORY = Paths.get(System.getProperty("booking.persistence.dir", "booking-data"));
+    private static final int SEGMENT_SIZE = Integer.getInteger("booking.persistence.segmentSize", 64 * 1024 * 1024);
+    private static final long FLUSH_INTERVAL = Long.getLong("booking.persistence.flushIntervalMillis", 10);
+    private static final long SNAPSHOT_INTERVAL = Long.getLong("booking.persistence.snapshotIntervalSeconds", 300);
+    private static final int REPLAY_BATCH_SIZE = 1024;
+
+    /**
+     * Changes hold the read lock while they update the state and record their event; a snapshot takes the write lock
+     * just long enough to read the log position, so every event up to that position is visible in the state it copies.
+     */
+    private static final StampedLock updateLock = new StampedLock();
+    private static final SnapshotStore snapshots = new SnapshotStore(DIRECTORY);
+    private static volatile WriteAheadLog wal;
+    private static ScheduledExecutorService snapshotScheduler;
+    private static long lastSnapshotSequence;
+
+    /**
+     * Recovers the stored state and starts recording changes. Has to be called before any component changes state.
+     */
+    public static synchronized void start() {
+        if (!ENABLED || wal != null) {
+            return;
+        }
+        try {
+            long startTime = System.nanoTime();
+            WriteAheadLog log = new WriteAheadLog(DIRECTORY, SEGMENT_SIZE, FLUSH_INTERVAL);
+            long[] eventCount = new long[1];
+            lastSnapshotSequence = recover(log, eventCount);
+            log.open(lastSnapshotSequence);
+            wal = log;
+            System.out.println("Recovered " + ReservationManager.getReservationCount() + " reservations and "
+                    + BuildingManager.getBuildings().size() + " buildings from " + eventCount[0] + " events in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms");
+
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(PersistenceManager::snapshotIfChanged,
+                    SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(PersistenceManager::stop, "persistence-shutdown"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not recover the stored state from " + DIRECTORY.toAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Writes a final snapshot and closes the log.
+     */
+    public static synchronized void stop() {
+        if (wal == null) {
+            return;
+        }
+        snapshotScheduler.shutdown();
+        snapshotIfChanged();
+        wal.close();
+        wal = null;
+    }
+
+    /**
+     * Starts a change of the state. The returned stamp has to be passed to {@link #endUpdate(long)}.
+     */
+    public static long beginUpdate() {
+        return wal == null ? 0 : updateLock.readLock();
+    }
+
+    public static void endUpdate(long stamp) {
+        if (stamp != 0) {
+            updateLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Records a change in the log. Does nothing if persistence is disabled or not started yet.
+     */
+    public static void record(StateEvent event) {
+        WriteAheadLog log = wal;
+        if (log != null) {
+            log.append(event);
+        }
+    }
+
+    /**
+     * Writes a snapshot if anything was recorded since the last one, then deletes the log segments it covers.
+     */
+    public static synchronized void snapshotIfChanged() {
+        WriteAheadLog log = wal;
+        if (log == null) {
+            return;
+        }
+        long stamp = updateLock.writeLock();
+        long sequence;
+        try {
+            sequence = log.getLastSequence();
+        } finally {
+            updateLock.unlockWrite(stamp);
+        }
+        if (sequence == lastSnapshotSequence) {
+            return;
+        }
+        try {
+            // Changes made while copying may or may not be included; replaying them after the sequence is idempotent
+            snapshots.write(sequence, consumer -> {
+                for (Building building : BuildingManager.getBuildings()) {
+                    consumer.accept(StateEvent.buildingRegistered(building.getBuildingID(), building.getRooms().size()));
+                }
+                ReservationManager.forEachReservation(reservation -> {
+                    String buildingName = reservation.getBuildingName();
+                    String roomName = reservation.getRoomName();
+                    long startTime = reservation.getStartTime();
+                    long endTime = reservation.getEndTime();
+                    // Read last: if the reservation was cancelled while copying, this and any later value is null,
+                    // and the cancellation is in the log after the snapshot's sequence
+                    String username = reservation.getUsername();
+                    if (username != null) {
+                        consumer.accept(StateEvent.reservationCreated(reservation.getReservationNumber(), username,
+                                buildingName, roomName, startTime, endTime));
+                    }
+                });
+            });
+            lastSnapshotSequence = sequence;
+            log.deleteSegmentsBefore(sequence);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads the snapshot and replays the log after it.
+     *
+     * @return The sequence number of the snapshot.
+     */
+    private static long recover(WriteAheadLog log, long[] eventCount) throws IOException {
+        int laneCount = Runtime.getRuntime().availableProcessors();
+        ReplayLanes lanes = new ReplayLanes(laneCount);
+        try {
+            long snapshotSequence = snapshots.load(event -> {
+                eventCount[0]++;
+                lanes.dispatch(event);
+            });
+            log.replay(snapshotSequence, event -> {
+                eventCount[0]++;
+                lanes.dispatch(event);
+            });
+            lanes.await();
+
+            List<Future<?>> rebooks = new ArrayList<>();
+            for (Building building : BuildingManager.getBuildings()) {
+                rebooks.add(lanes.executors[Math.floorMod(building.getBuildingID(), laneCount)]
+                        .submit(() -> rebookRooms(building)));
+            }
+            for (Future<?> rebook : rebooks) {
+                rebook.get();
+            }
+            return snapshotSequence;
+        } catch (Exception e) {
+            throw e instanceof IOException ioException ? ioException : new IOException(e);
+        } finally {
+            lanes.shutdown();
+        }
+    }
+
+    /**
+     * Books the slots of the recovered reservations in the calendars of the rooms of a building.
+     */
+    private static void rebookRooms(Building building) {
+        for (Reservation reservation : ReservationManager.getReservationsByBuilding(building.getBuildingName())) {
+            ConferenceRoom room = building.getRoom(reservation.getRoomName());
+            if (room == null || !room.bookRoom(reservation.getStartTime(), reservation.getEndTime(),
+                    reservation.getReservationNumber())) {
+                System.err.println("Recovered reservation cannot be booked: " + reservation);
+            }
+        }
+    }
+
+    private static void apply(StateEvent event) {
+        switch (event.getType()) {
+            case BUILDING_REGISTERED:
+                BuildingManager.restoreBuilding(event.getBuildingId(), event.getNumberOfRooms());
+                break;
+            case RESERVATION_CREATED:
+                ReservationManager.restoreReservation(event.getReservationNumber(), event.getUsername(),
+                        event.getBuildingName(), event.getRoomName(), event.getStartTime(), event.getEndTime());
+                break;
+            case RESERVATION_CANCELLED:
+                ReservationManager.restoreCancellation(event.getReservationNumber());
+                break;
+        }
+    }
+
+    /**
+     * Single-thread executors that apply reservation events in batches, one lane per group of buildings.
+     * Building registrations are applied right away on the reading thread, since later events depend on them.
+     */
+    private static class ReplayLanes {
+        private final ExecutorService[] executors;
+        private final List<List<StateEvent>> batches = new ArrayList<>();
+        private final List<Future<?>> pending = new ArrayList<>();
+
+        ReplayLanes(int laneCount) {
+            executors = new ExecutorService[laneCount];
+            for (int i = 0; i < laneCount; i++) {
+                executors[i] = Executors.newSingleThreadExecutor();
+                batches.add(new ArrayList<>(REPLAY_BATCH_SIZE));
+            }
+        }
+
+        void dispatch(StateEvent event) {
+            if (event.getType() == StateEvent.Type.BUILDING_REGISTERED) {
+                apply(event);
+                return;
+            }
+            String buildingName = event.getBuildingName();
+            int lane = buildingName == null ? 0
+                    : Math.floorMod(buildingName.toLowerCase(Locale.ROOT).hashCode(), executors.length);
+            List<StateEvent> batch = batches.get(lane);
+            batch.add(event);
+            if (batch.size() >= REPLAY_BATCH_SIZE) {
+                submit(lane);
+            }
+        }
+
+        void await() throws Exception {
+            for (int lane = 0; lane < executors.length; lane++) {
+                submit(lane);
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+            pending.clear();
+        }
+
+        void shutdown() {
+            for (ExecutorService executor : executors) {
+                executor.shutdown();
+            }
+        }
+
+        private void submit(int lane) {
+            List<StateEvent> batch = batches.get(lane);
+            if (batch.isEmpty()) {
+                return;
+            }
+            batches.set(lane, new ArrayList<>(REPLAY_BATCH_SIZE));
+            pending.add(executors[lane].submit(() -> {
+                for (StateEvent event : batch) {
+                    try {
+                        apply(event);
+                    } catch (RuntimeException e) {
+                        System.err.println("Could not replay " + event);
+                        e.printStackTrace();
+                    }
+                }
+            }));
+            // Completed batches are dropped so the list does not grow with the size of the log
+            if (pending.size() > executors.length * 4) {
+                pending.removeIf(Future::isDone);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package persistence;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Stores the full state as a compact binary file {@code snapshot-<sequence>.bin}, where the sequence is the last
+ * write-ahead log event the snapshot contains. The file holds a header, the state as {@link StateEvent}s that recreate
+ * it, and a CRC32C of everything before it. It is written to a temporary file that is synced and then renamed,
+ * so a crash while writing leaves the previous snapshot in place.
+ */
+public class SnapshotStore {
+    private static final int MAGIC = 0x424B534E;
+    private static final int VERSION = 1;
+    private static final int END_OF_EVENTS = 0;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writes a snapshot and deletes the older ones once it is in place.
+     *
+     * @param sequence Sequence number of the last log event contained in the state.
+     * @param state    Passes every event of the state to the given consumer; buildings have to come first.
+     */
+    public void write(long sequence, Consumer<Consumer<StateEvent>> state) throws IOException {
+        Files.createDirectories(directory);
+        Path target = pathOf(sequence);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32C checksum = new CRC32C();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream file = Channels.newOutputStream(channel);
+            CheckedOutputStream output = new CheckedOutputStream(file, checksum);
+            BinaryWriter chunk = new BinaryWriter(CHUNK_SIZE + 1024);
+            chunk.writeInt(MAGIC);
+            chunk.writeByte(VERSION);
+            chunk.writeVarLong(sequence);
+            IOException[] failure = new IOException[1];
+            state.accept(event -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                event.encode(chunk);
+                if (chunk.size() >= CHUNK_SIZE) {
+                    try {
+                        chunk.writeTo(output);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                    chunk.reset();
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            chunk.writeByte(END_OF_EVENTS);
+            chunk.writeTo(output);
+            chunk.reset();
+            chunk.writeInt((int) checksum.getValue());
+            chunk.writeTo(file);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (Path snapshot : listSnapshots()) {
+            if (sequenceOf(snapshot) < sequence) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Loads the newest valid snapshot.
+     *
+     * @param consumer Receives the events of the snapshot in the order they were written.
+     * @return The sequence number of the snapshot, or 0 if there is none.
+     */
+    public long load(Consumer<StateEvent> consumer) throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            byte[] content = Files.readAllBytes(snapshots.get(i));
+            if (!isValid(content)) {
+                System.err.println("Skipping damaged snapshot " + snapshots.get(i));
+                continue;
+            }
+            BinaryReader input = new BinaryReader(content, 0, content.length - 4);
+            input.readInt();
+            int version = input.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            long sequence = input.readVarLong();
+            while (input.remaining() > 1) {
+                consumer.accept(StateEvent.decode(input));
+            }
+            return sequence;
+        }
+        return 0;
+    }
+
+    private static boolean isValid(byte[] content) {
+        if (content.length < 9) {
+            return false;
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(content, 0, content.length - 4);
+        int stored = ((content[content.length - 4] & 0xFF) << 24) | ((content[content.length - 3] & 0xFF) << 16)
+                | ((content[content.length - 2] & 0xFF) << 8) | (content[content.length - 1] & 0xFF);
+        return stored == (int) checksum.getValue() && content[content.length - 5] == END_OF_EVENTS;
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            stream.forEach(snapshots::add);
+        }
+        snapshots.sort(null);
+        return snapshots;
+    }
+
+    private Path pathOf(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,153 @@
+package persistence;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+
+import java.io.IOException;
+
+/**
+ * A change of the reservation or building state as it is written to the write-ahead log and to snapshots.
+ * Cancellations carry the building name as well, so recovery can replay the events of different buildings in parallel.
+ */
+public class StateEvent {
+
+    public enum Type {
+        BUILDING_REGISTERED(1),
+        RESERVATION_CREATED(2),
+        RESERVATION_CANCELLED(3);
+
+        private final int tag;
+
+        Type(int tag) {
+            this.tag = tag;
+        }
+
+        static Type fromTag(int tag) throws IOException {
+            for (Type type : values()) {
+                if (type.tag == tag) {
+                    return type;
+                }
+            }
+            throw new IOException("Unknown state event type: " + tag);
+        }
+    }
+
+    private final Type type;
+    private final int buildingId;
+    private final int numberOfRooms;
+    private final String reservationNumber;
+    private final String username;
+    private final String buildingName;
+    private final String roomName;
+    private final long startTime;
+    private final long endTime;
+
+    private StateEvent(Type type, int buildingId, int numberOfRooms, String reservationNumber, String username,
+                       String buildingName, String roomName, long startTime, long endTime) {
+        this.type = type;
+        this.buildingId = buildingId;
+        this.numberOfRooms = numberOfRooms;
+        this.reservationNumber = reservationNumber;
+        this.username = username;
+        this.buildingName = buildingName;
+        this.roomName = roomName;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public static StateEvent buildingRegistered(int buildingId, int numberOfRooms) {
+        return new StateEvent(Type.BUILDING_REGISTERED, buildingId, numberOfRooms, null, null, null, null, 0, 0);
+    }
+
+    public static StateEvent reservationCreated(String reservationNumber, String username, String buildingName,
+                                                String roomName, long startTime, long endTime) {
+        return new StateEvent(Type.RESERVATION_CREATED, 0, 0, reservationNumber, username, buildingName, roomName,
+                startTime, endTime);
+    }
+
+    public static StateEvent reservationCancelled(String reservationNumber, String buildingName) {
+        return new StateEvent(Type.RESERVATION_CANCELLED, 0, 0, reservationNumber, null, buildingName, null, 0, 0);
+    }
+
+    /**
+     * Writes the event as its type tag followed by the fields of that type.
+     */
+    public void encode(BinaryWriter output) {
+        output.writeByte(type.tag);
+        switch (type) {
+            case BUILDING_REGISTERED -> {
+                output.writeVarInt(buildingId);
+                output.writeVarInt(numberOfRooms);
+            }
+            case RESERVATION_CREATED -> {
+                output.writeString(reservationNumber);
+                output.writeString(username);
+                output.writeString(buildingName);
+                output.writeString(roomName);
+                output.writeVarLong(startTime);
+                output.writeVarLong(endTime);
+            }
+            case RESERVATION_CANCELLED -> {
+                output.writeString(reservationNumber);
+                output.writeString(buildingName);
+            }
+        }
+    }
+
+    public static StateEvent decode(BinaryReader input) throws IOException {
+        Type type = Type.fromTag(input.readByte());
+        return switch (type) {
+            case BUILDING_REGISTERED -> buildingRegistered(input.readVarInt(), input.readVarInt());
+            case RESERVATION_CREATED -> reservationCreated(input.readString(), input.readString(), input.readString(),
+                    input.readString(), input.readVarLong(), input.readVarLong());
+            case RESERVATION_CANCELLED -> reservationCancelled(input.readString(), input.readString());
+        };
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getBuildingId() {
+        return buildingId;
+    }
+
+    public int getNumberOfRooms() {
+        return numberOfRooms;
+    }
+
+    public String getReservationNumber() {
+        return reservationNumber;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getBuildingName() {
+        return buildingName;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    @Override
+    public String toString() {
+        return "StateEvent{" +
+                "type:" + type +
+                ", buildingId:" + buildingId +
+                ", reservationNumber:'" + reservationNumber + '\'' +
+                ", buildingName:'" + buildingName + '\'' +
+                ", roomName:'" + roomName + '\'' +
+                '}';
+    }
+}
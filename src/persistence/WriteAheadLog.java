@@ -0,0 +1,304 @@
+package persistence;
+
+import utils.BinaryReader;
+import utils.BinaryWriter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of {@link StateEvent}s, split into segment files of a fixed size that are memory-mapped while
+ * they are written. Each record is stored as
+ * <pre>[int body length][int CRC32C of sequence and body][long sequence][body]</pre>
+ * and the segment is named after the sequence number of its first record. A record with length 0 or a wrong
+ * checksum marks the end of the log.
+ * <p>
+ * Appending copies the record into the mapping and returns; a flusher thread forces everything appended since its last
+ * run to disk once per flush interval, so a burst of appends shares one sync (group commit) and no caller ever waits
+ * for the disk. Records survive a crash of the process as soon as they are appended, and a crash of the machine once
+ * they are flushed.
+ */
+public class WriteAheadLog implements AutoCloseable {
+    private static final int HEADER_SIZE = 16;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long flushIntervalNanos;
+    private final ThreadLocal<BinaryWriter> encodeBuffers = ThreadLocal.withInitial(() -> new BinaryWriter(256));
+    private final CRC32C checksum = new CRC32C();
+
+    private MappedByteBuffer segment;
+    private long segmentFirstSequence;
+    private long lastSequence;
+    private int flushedPosition;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    /**
+     * @param directory       Directory holding the segment files.
+     * @param segmentSize     Size of each segment file in bytes.
+     * @param flushInterval   Maximum time in milliseconds between an append and the sync that makes it durable.
+     */
+    public WriteAheadLog(Path directory, int segmentSize, long flushInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+    }
+
+    /**
+     * Opens the newest segment after the last valid record, or starts a new log if there is none,
+     * and starts the flusher thread.
+     *
+     * @param minimumSequence Sequence number the log has to continue after, e.g. the one of the latest snapshot.
+     */
+    public synchronized void open(long minimumSequence) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = listSegments();
+        lastSequence = minimumSequence;
+        if (segments.isEmpty()) {
+            startSegment(minimumSequence + 1);
+        } else {
+            Path newest = segments.get(segments.size() - 1);
+            segmentFirstSequence = firstSequenceOf(newest);
+            segment = map(newest);
+            int position = 0;
+            long expected = segmentFirstSequence;
+            while (true) {
+                long sequence = readRecord(segment, position, expected, Long.MAX_VALUE, null);
+                if (sequence < 0) {
+                    break;
+                }
+                position += HEADER_SIZE + segment.getInt(position);
+                expected = sequence + 1;
+            }
+            lastSequence = Math.max(lastSequence, expected - 1);
+            // Whatever follows the last valid record is a torn write; it must not be read back behind new records
+            byte[] zeros = new byte[64 * 1024];
+            for (int i = position; i < segmentSize; i += zeros.length) {
+                segment.put(i, zeros, 0, Math.min(zeros.length, segmentSize - i));
+            }
+            segment.position(position);
+            segment.force();
+            flushedPosition = position;
+            if (expected - 1 < minimumSequence) {
+                startSegment(minimumSequence + 1);
+            }
+        }
+        flusher = new Thread(this::runFlusher, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends an event to the log.
+     *
+     * @return The sequence number of the event.
+     */
+    public long append(StateEvent event) {
+        BinaryWriter body = encodeBuffers.get();
+        body.reset();
+        event.encode(body);
+        if (HEADER_SIZE + body.size() > segmentSize) {
+            throw new IllegalArgumentException("Event of " + body.size() + " bytes does not fit into a log segment");
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The write-ahead log is closed");
+            }
+            if (segment.remaining() < HEADER_SIZE + body.size()) {
+                rollSegment();
+            }
+            long sequence = ++lastSequence;
+            int position = segment.position();
+            segment.position(position + 8);
+            segment.putLong(sequence);
+            body.writeTo(segment);
+            checksum.reset();
+            checksum.update(segment.slice(position + 8, 8 + body.size()));
+            segment.putInt(position + 4, (int) checksum.getValue());
+            segment.putInt(position, body.size());
+            return sequence;
+        }
+    }
+
+    /**
+     * @return The sequence number of the last appended event.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Reads every event with a sequence number greater than the given one, in log order.
+     */
+    public void replay(long afterSequence, Consumer<StateEvent> consumer) throws IOException {
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            // A segment is skipped if the next one starts at or before the first event we need
+            if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            Path path = segments.get(i);
+            MappedByteBuffer buffer = map(path);
+            int position = 0;
+            long expected = firstSequenceOf(path);
+            while (true) {
+                long sequence = readRecord(buffer, position, expected, afterSequence, consumer);
+                if (sequence < 0) {
+                    break;
+                }
+                position += HEADER_SIZE + buffer.getInt(position);
+                expected = sequence + 1;
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments that only hold events up to the given sequence number. The segment being written is kept.
+     */
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        long currentFirstSequence;
+        synchronized (this) {
+            currentFirstSequence = segmentFirstSequence;
+        }
+        List<Path> segments = listSegments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            long nextFirstSequence = firstSequenceOf(segments.get(i + 1));
+            if (nextFirstSequence - 1 > sequence || firstSequenceOf(segments.get(i)) >= currentFirstSequence) {
+                break;
+            }
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Forces every appended event to disk.
+     */
+    public void flush() {
+        MappedByteBuffer buffer;
+        int from;
+        int to;
+        synchronized (this) {
+            if (segment == null) {
+                return;
+            }
+            buffer = segment;
+            from = flushedPosition;
+            to = segment.position();
+            flushedPosition = to;
+        }
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        LockSupport.unpark(flusher);
+        flush();
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            try {
+                flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Forces the full segment and continues in a new one. Called while holding the lock.
+     */
+    private void rollSegment() {
+        segment.force();
+        try {
+            startSegment(lastSequence + 1);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create a new log segment", e);
+        }
+    }
+
+    private void startSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segment = map(path);
+        segmentFirstSequence = firstSequence;
+        flushedPosition = 0;
+    }
+
+    private MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    /**
+     * Validates the record at the given position and passes its event to the consumer if its sequence number is
+     * greater than {@code afterSequence}. Events that are skipped are not decoded.
+     *
+     * @return The sequence number of the record, or -1 if there is no valid record with the expected sequence number.
+     */
+    private long readRecord(MappedByteBuffer buffer, int position, long expectedSequence, long afterSequence,
+                            Consumer<StateEvent> consumer) throws IOException {
+        if (position + HEADER_SIZE > buffer.limit()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > buffer.limit()) {
+            return -1;
+        }
+        long sequence = buffer.getLong(position + 8);
+        CRC32C recordChecksum = new CRC32C();
+        recordChecksum.update(buffer.slice(position + 8, 8 + length));
+        if (sequence != expectedSequence || (int) recordChecksum.getValue() != buffer.getInt(position + 4)) {
+            return -1;
+        }
+        if (consumer != null && sequence > afterSequence) {
+            byte[] body = new byte[length];
+            buffer.get(position + HEADER_SIZE, body);
+            consumer.accept(StateEvent.decode(new BinaryReader(body)));
+        }
+        return sequence;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        // Names are zero-padded, so the lexical order is the order of the sequence numbers
+        segments.sort(null);
+        return segments;
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
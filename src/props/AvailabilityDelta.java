@@ -0,0 +1,95 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Payload of ROOM_STATE_CHANGED messages: a room that became booked or free. Deltas of one stream are numbered without
+ * gaps, so a subscriber that misses one notices it and loads a new {@link AvailabilityState}. A room index of -1
+ * announces a new building, which subscribers only learn about from a new state.
+ */
+public class AvailabilityDelta {
+    public static final int BUILDING_ADDED = -1;
+
+    @JsonProperty("stream")
+    private String stream;
+    @JsonProperty("sequence")
+    private long sequence;
+    @JsonProperty("buildingId")
+    private int buildingId;
+    @JsonProperty("roomIndex")
+    private int roomIndex;
+    @JsonProperty("booked")
+    private boolean booked;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public AvailabilityDelta() {
+    }
+
+    /**
+     * @param stream     ID of the publisher, which changes when it restarts and numbers its deltas from 1 again.
+     * @param sequence   Number of the delta in its stream.
+     * @param buildingId The building of the room.
+     * @param roomIndex  Zero-based index of the room, or {@link #BUILDING_ADDED}.
+     * @param booked     true if the room got booked, false if it became free.
+     */
+    public AvailabilityDelta(String stream, long sequence, int buildingId, int roomIndex, boolean booked) {
+        this.stream = stream;
+        this.sequence = sequence;
+        this.buildingId = buildingId;
+        this.roomIndex = roomIndex;
+        this.booked = booked;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getBuildingId() {
+        return buildingId;
+    }
+
+    public int getRoomIndex() {
+        return roomIndex;
+    }
+
+    public boolean isBooked() {
+        return booked;
+    }
+
+    public void setStream(String stream) {
+        this.stream = stream;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public void setBuildingId(int buildingId) {
+        this.buildingId = buildingId;
+    }
+
+    public void setRoomIndex(int roomIndex) {
+        this.roomIndex = roomIndex;
+    }
+
+    public void setBooked(boolean booked) {
+        this.booked = booked;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityDelta{" +
+                "stream='" + stream + '\'' +
+                ", sequence=" + sequence +
+                ", buildingId=" + buildingId +
+                ", roomIndex=" + roomIndex +
+                ", booked=" + booked +
+                '}';
+    }
+}
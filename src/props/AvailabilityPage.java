@@ -0,0 +1,62 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of AVAILABILITY_PAGE messages: the rooms of one page of an {@link AvailabilityQuery}, and the cursor to ask
+ * for the next page with. Rooms that change between pages are listed with the state they had when their page was made.
+ */
+public class AvailabilityPage {
+    @JsonProperty("rooms")
+    private List<RoomStatus> rooms = new ArrayList<>();
+    @JsonProperty("nextCursor")
+    private String nextCursor;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public AvailabilityPage() {
+    }
+
+    /**
+     * @param rooms      The rooms of the page.
+     * @param nextCursor The cursor of the next page, or null if this is the last page.
+     */
+    public AvailabilityPage(List<RoomStatus> rooms, String nextCursor) {
+        this.rooms = rooms;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RoomStatus> getRooms() {
+        return rooms;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @JsonIgnore
+    public boolean isLast() {
+        return nextCursor == null;
+    }
+
+    public void setRooms(List<RoomStatus> rooms) {
+        this.rooms = rooms;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityPage{" +
+                "rooms=" + rooms +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,111 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of QUERY_AVAILABILITY messages: which rooms to list, and where to continue. Rooms are listed in the order of
+ * their building ID and room number, one page at a time; each {@link AvailabilityPage} carries the cursor of the next.
+ */
+public class AvailabilityQuery {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    @JsonProperty("buildingNames")
+    private List<String> buildingNames = new ArrayList<>();
+    @JsonProperty("buildingNamePrefix")
+    private String buildingNamePrefix;
+    @JsonProperty("freeOnly")
+    private boolean freeOnly;
+    @JsonProperty("minFreeRooms")
+    private int minFreeRooms;
+    @JsonProperty("pageSize")
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    @JsonProperty("cursor")
+    private String cursor;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public AvailabilityQuery() {
+    }
+
+    /**
+     * @param buildingNames      The buildings to list, ignoring case, or an empty list for all buildings.
+     * @param buildingNamePrefix Only buildings whose name starts with it, ignoring case, or null for any name.
+     * @param freeOnly           If true, only rooms without a running booking are listed.
+     * @param minFreeRooms       Only buildings with at least this many rooms free right now.
+     * @param pageSize           The most rooms a page holds. The RentalAgent may send smaller pages.
+     * @param cursor             The cursor of the previous page, or null for the first page.
+     */
+    public AvailabilityQuery(List<String> buildingNames, String buildingNamePrefix, boolean freeOnly, int minFreeRooms,
+                             int pageSize, String cursor) {
+        this.buildingNames = buildingNames;
+        this.buildingNamePrefix = buildingNamePrefix;
+        this.freeOnly = freeOnly;
+        this.minFreeRooms = minFreeRooms;
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+    }
+
+    public List<String> getBuildingNames() {
+        return buildingNames;
+    }
+
+    public String getBuildingNamePrefix() {
+        return buildingNamePrefix;
+    }
+
+    public boolean isFreeOnly() {
+        return freeOnly;
+    }
+
+    public int getMinFreeRooms() {
+        return minFreeRooms;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setBuildingNames(List<String> buildingNames) {
+        this.buildingNames = buildingNames;
+    }
+
+    public void setBuildingNamePrefix(String buildingNamePrefix) {
+        this.buildingNamePrefix = buildingNamePrefix;
+    }
+
+    public void setFreeOnly(boolean freeOnly) {
+        this.freeOnly = freeOnly;
+    }
+
+    public void setMinFreeRooms(int minFreeRooms) {
+        this.minFreeRooms = minFreeRooms;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityQuery{" +
+                "buildingNames=" + buildingNames +
+                ", buildingNamePrefix='" + buildingNamePrefix + '\'' +
+                ", freeOnly=" + freeOnly +
+                ", minFreeRooms=" + minFreeRooms +
+                ", pageSize=" + pageSize +
+                ", cursor='" + cursor + '\'' +
+                '}';
+    }
+}
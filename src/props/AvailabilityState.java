@@ -0,0 +1,65 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of AVAILABILITY_SNAPSHOT messages: the rooms of all buildings and which of them are booked. The state
+ * includes every {@link AvailabilityDelta} of its stream up to its sequence number; a subscriber applies the deltas
+ * after it.
+ */
+public class AvailabilityState {
+    @JsonProperty("stream")
+    private String stream;
+    @JsonProperty("sequence")
+    private long sequence;
+    @JsonProperty("buildings")
+    private List<BuildingAvailability> buildings = new ArrayList<>();
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public AvailabilityState() {
+    }
+
+    public AvailabilityState(String stream, long sequence, List<BuildingAvailability> buildings) {
+        this.stream = stream;
+        this.sequence = sequence;
+        this.buildings = buildings;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public List<BuildingAvailability> getBuildings() {
+        return buildings;
+    }
+
+    public void setStream(String stream) {
+        this.stream = stream;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public void setBuildings(List<BuildingAvailability> buildings) {
+        this.buildings = buildings;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityState{" +
+                "stream='" + stream + '\'' +
+                ", sequence=" + sequence +
+                ", buildings=" + buildings +
+                '}';
+    }
+}
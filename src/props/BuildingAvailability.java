@@ -0,0 +1,75 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rooms of one building in an {@link AvailabilityState}. Which rooms are booked is a bitmap with one bit per room
+ * in the order of the room names, packed into {@code long} words.
+ */
+public class BuildingAvailability {
+    @JsonProperty("buildingId")
+    private int buildingId;
+    @JsonProperty("buildingName")
+    private String buildingName;
+    @JsonProperty("roomNames")
+    private List<String> roomNames = new ArrayList<>();
+    @JsonProperty("bookedRooms")
+    private long[] bookedRooms = new long[0];
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public BuildingAvailability() {
+    }
+
+    public BuildingAvailability(int buildingId, String buildingName, List<String> roomNames, long[] bookedRooms) {
+        this.buildingId = buildingId;
+        this.buildingName = buildingName;
+        this.roomNames = roomNames;
+        this.bookedRooms = bookedRooms;
+    }
+
+    public int getBuildingId() {
+        return buildingId;
+    }
+
+    public String getBuildingName() {
+        return buildingName;
+    }
+
+    public List<String> getRoomNames() {
+        return roomNames;
+    }
+
+    public long[] getBookedRooms() {
+        return bookedRooms;
+    }
+
+    public void setBuildingId(int buildingId) {
+        this.buildingId = buildingId;
+    }
+
+    public void setBuildingName(String buildingName) {
+        this.buildingName = buildingName;
+    }
+
+    public void setRoomNames(List<String> roomNames) {
+        this.roomNames = roomNames;
+    }
+
+    public void setBookedRooms(long[] bookedRooms) {
+        this.bookedRooms = bookedRooms;
+    }
+
+    @Override
+    public String toString() {
+        return "BuildingAvailability{" +
+                "buildingId=" + buildingId +
+                ", buildingName='" + buildingName + '\'' +
+                ", rooms=" + roomNames.size() +
+                '}';
+    }
+}
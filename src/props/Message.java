@@ -1,13 +1,33 @@
 package props;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class Message {
     @JsonProperty("type")
     private MessageType type;
     @JsonProperty("payload")
     private Object payload;
-
+    /**
+     * Set by the sender of a request and copied into the reply, so the reply can be matched to the request.
+     */
+    @JsonProperty("correlationId")
+    private String correlationId;
+    /**
+     * Name of the queue the reply to this message has to be sent to.
+     */
+    @JsonProperty("replyTo")
+    private String replyTo;
+    /**
+     * Named values about the message rather than its content, e.g. the building it is for. Null until the first
+     * header is set, so most messages carry no map.
+     */
+    @JsonProperty("headers")
+    private Map<String, String> headers;
 
     /**
      * Creates one more empty constructor for successful serializing.
@@ -28,6 +48,14 @@ public class Message {
         return payload;
     }
 
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public String getReplyTo() {
+        return replyTo;
+    }
+
     public void setType(MessageType type) {
         this.type = type;
     }
@@ -36,11 +64,47 @@ public class Message {
         this.payload = payload;
     }
 
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public void setReplyTo(String replyTo) {
+        this.replyTo = replyTo;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * @return The value of the header, or null if the message does not have it.
+     */
+    public String getHeader(String name) {
+        return headers == null ? null : headers.get(name);
+    }
+
+    /**
+     * Sets a header, replacing an earlier value of it.
+     */
+    public void setHeader(String name, String value) {
+        if (headers == null) {
+            headers = new LinkedHashMap<>();
+        }
+        headers.put(name, value);
+    }
+
     @Override
     public String toString() {
         return "Message{" +
                 "type=" + type +
                 ", payload=" + payload +
+                ", correlationId=" + correlationId +
+                ", replyTo=" + replyTo +
+                (headers == null ? "" : ", headers=" + headers) +
                 '}';
     }
 }
@@ -1,32 +1,74 @@
 package props;
 
 public enum MessageType {
-    REQUEST_BUILDINGS("REQUEST_BUILDINGS"),
-    RESPONSE_BUILDINGS("RESPONSE_BUILDINGS"),
-    MAKE_RESERVATION("MAKE_RESERVATION"),
-    ALREADY_BOOKED("ALREADY_BOOKED"),
-    ROOM_NOT_FOUND("ROOM_NOT_FOUND"),
-    RESERVATION_NUMBER("RESERVATION_NUMBER"),
-    BUILDING_NOT_FOUND("BUILDING_NOT_FOUND"),
-    ROOM_NOT_BOOKED("ROOM_NOT_BOOKED"),
-    RESERVATION_CANCELLED("RESERVATION_CANCELLED"),
-    RESERVATION_CONFIRMED("RESERVATION_CONFIRMED"),
-    RESERVATION_CANT_FOUND("RESERVATION_CANT_FOUND"),
-    CONFIRM_RESERVATION("CONFIRM_RESERVATION"),
-    REGISTER_BUILDING("REGISTER_BUILDING"),
-    CREATE_BUILDING("CREATE_BUILDING"),
-    BUILDING_CREATED("BUILDING_CREATED"),
-    CANCEL_RESERVATION("CANCEL_RESERVATION");
+    REQUEST_BUILDINGS("REQUEST_BUILDINGS", 1, PayloadSchema.EMPTY),
+    RESPONSE_BUILDINGS("RESPONSE_BUILDINGS", 2, PayloadSchema.TEXT_LIST),
+    MAKE_RESERVATION("MAKE_RESERVATION", 3, PayloadSchema.RESERVATION_REQUEST),
+    ALREADY_BOOKED("ALREADY_BOOKED", 4, PayloadSchema.TEXT),
+    ROOM_NOT_FOUND("ROOM_NOT_FOUND", 5, PayloadSchema.TEXT),
+    RESERVATION_NUMBER("RESERVATION_NUMBER", 6, PayloadSchema.TEXT),
+    BUILDING_NOT_FOUND("BUILDING_NOT_FOUND", 7, PayloadSchema.TEXT),
+    ROOM_NOT_BOOKED("ROOM_NOT_BOOKED", 8, PayloadSchema.TEXT),
+    RESERVATION_CANCELLED("RESERVATION_CANCELLED", 9, PayloadSchema.TEXT),
+    RESERVATION_CONFIRMED("RESERVATION_CONFIRMED", 10, PayloadSchema.TEXT),
+    RESERVATION_CANT_FOUND("RESERVATION_CANT_FOUND", 11, PayloadSchema.TEXT),
+    RESERVATION_FAILED("RESERVATION_FAILED", 17, PayloadSchema.TEXT),
+    CONFIRM_RESERVATION("CONFIRM_RESERVATION", 12, PayloadSchema.TEXT),
+    REGISTER_BUILDING("REGISTER_BUILDING", 13, PayloadSchema.TEXT),
+    CREATE_BUILDING("CREATE_BUILDING", 14, PayloadSchema.NUMBER),
+    BUILDING_CREATED("BUILDING_CREATED", 15, PayloadSchema.TEXT),
+    CANCEL_RESERVATION("CANCEL_RESERVATION", 16, PayloadSchema.RESERVATION_REQUEST),
+    MAKE_RESERVATION_BATCH("MAKE_RESERVATION_BATCH", 18, PayloadSchema.RESERVATION_BATCH),
+    CANCEL_RESERVATION_BATCH("CANCEL_RESERVATION_BATCH", 19, PayloadSchema.RESERVATION_BATCH),
+    BATCH_RESULT("BATCH_RESULT", 20, PayloadSchema.RESERVATION_BATCH_RESULT),
+    SUBSCRIBE_AVAILABILITY("SUBSCRIBE_AVAILABILITY", 21, PayloadSchema.EMPTY),
+    AVAILABILITY_SNAPSHOT("AVAILABILITY_SNAPSHOT", 22, PayloadSchema.AVAILABILITY_STATE),
+    ROOM_STATE_CHANGED("ROOM_STATE_CHANGED", 23, PayloadSchema.AVAILABILITY_DELTA),
+    QUERY_AVAILABILITY("QUERY_AVAILABILITY", 24, PayloadSchema.AVAILABILITY_QUERY),
+    AVAILABILITY_PAGE("AVAILABILITY_PAGE", 25, PayloadSchema.AVAILABILITY_PAGE),
+    INVALID_QUERY("INVALID_QUERY", 26, PayloadSchema.TEXT);
+
+    private static final MessageType[] BY_TAG = new MessageType[256];
+
+    static {
+        for (MessageType type : values()) {
+            BY_TAG[type.tag] = type;
+        }
+    }
 
     private final String value;
+    private final int tag;
+    private final PayloadSchema payloadSchema;
 
-    MessageType(String value) {
+    /**
+     * @param value         Name of the type.
+     * @param tag           Number identifying the type in the binary wire format. Must never change or be reused.
+     * @param payloadSchema Shape of the payload messages of this type carry.
+     */
+    MessageType(String value, int tag, PayloadSchema payloadSchema) {
         this.value = value;
+        this.tag = tag;
+        this.payloadSchema = payloadSchema;
     }
 
     public String getValue() {
         return value;
     }
+
+    public int getTag() {
+        return tag;
+    }
+
+    public PayloadSchema getPayloadSchema() {
+        return payloadSchema;
+    }
+
+    /**
+     * Returns the type with the given wire tag, or null if there is none.
+     */
+    public static MessageType fromTag(int tag) {
+        return tag >= 0 && tag < BY_TAG.length ? BY_TAG[tag] : null;
+    }
 }
 
 
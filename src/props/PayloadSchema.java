@@ -0,0 +1,31 @@
+package props;
+
+import java.util.List;
+
+/**
+ * Shape of the payload a {@link MessageType} carries. The codecs use it to write and read payloads without type information
+ * on the wire.
+ */
+public enum PayloadSchema {
+    EMPTY(Void.class),
+    TEXT(String.class),
+    NUMBER(Integer.class),
+    TEXT_LIST(List.class),
+    RESERVATION_REQUEST(ReservationRequest.class),
+    RESERVATION_BATCH(ReservationBatch.class),
+    RESERVATION_BATCH_RESULT(ReservationBatchResult.class),
+    AVAILABILITY_STATE(AvailabilityState.class),
+    AVAILABILITY_DELTA(AvailabilityDelta.class),
+    AVAILABILITY_QUERY(AvailabilityQuery.class),
+    AVAILABILITY_PAGE(AvailabilityPage.class);
+
+    private final Class<?> payloadClass;
+
+    PayloadSchema(Class<?> payloadClass) {
+        this.payloadClass = payloadClass;
+    }
+
+    public Class<?> getPayloadClass() {
+        return payloadClass;
+    }
+}
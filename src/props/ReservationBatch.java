@@ -0,0 +1,66 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of MAKE_RESERVATION_BATCH and CANCEL_RESERVATION_BATCH messages: many reservations of one user that are made
+ * or cancelled with a single request. The RentalAgent splits a batch by building and sends each building one batch
+ * with the reservations of its rooms. In all-or-nothing mode either every reservation of the batch is made or cancelled,
+ * or none is.
+ */
+public class ReservationBatch {
+    @JsonProperty("username")
+    private String username;
+    @JsonProperty("allOrNothing")
+    private boolean allOrNothing;
+    @JsonProperty("requests")
+    private List<ReservationRequest> requests = new ArrayList<>();
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public ReservationBatch() {
+    }
+
+    public ReservationBatch(String username, boolean allOrNothing, List<ReservationRequest> requests) {
+        this.username = username;
+        this.allOrNothing = allOrNothing;
+        this.requests = requests;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isAllOrNothing() {
+        return allOrNothing;
+    }
+
+    public List<ReservationRequest> getRequests() {
+        return requests;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setAllOrNothing(boolean allOrNothing) {
+        this.allOrNothing = allOrNothing;
+    }
+
+    public void setRequests(List<ReservationRequest> requests) {
+        this.requests = requests;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationBatch{" +
+                "username='" + username + '\'' +
+                ", allOrNothing=" + allOrNothing +
+                ", requests=" + requests +
+                '}';
+    }
+}
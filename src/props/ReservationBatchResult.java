@@ -0,0 +1,40 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Payload of BATCH_RESULT messages: the results of the reservations of a {@link ReservationBatch}, in the order of
+ * the batch.
+ */
+public class ReservationBatchResult {
+    @JsonProperty("results")
+    private List<ReservationResult> results = new ArrayList<>();
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public ReservationBatchResult() {
+    }
+
+    public ReservationBatchResult(List<ReservationResult> results) {
+        this.results = results;
+    }
+
+    public List<ReservationResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ReservationResult> results) {
+        this.results = results;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationBatchResult{" +
+                "results=" + results +
+                '}';
+    }
+}
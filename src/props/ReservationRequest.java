@@ -0,0 +1,106 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Payload of MAKE_RESERVATION and CANCEL_RESERVATION messages. A client fills in the fields it knows: the building,
+ * room and time slot to book, or the number of the reservation to cancel. The RentalAgent passes the complete request
+ * on to the building. Times are epoch milliseconds; a request without a time slot books the room without end.
+ */
+public class ReservationRequest {
+    public static final long OPEN_START = 0L;
+    public static final long OPEN_END = Long.MAX_VALUE;
+
+    @JsonProperty("username")
+    private String username;
+    @JsonProperty("buildingName")
+    private String buildingName;
+    @JsonProperty("roomName")
+    private String roomName;
+    @JsonProperty("reservationNumber")
+    private String reservationNumber;
+    @JsonProperty("startTime")
+    private long startTime = OPEN_START;
+    @JsonProperty("endTime")
+    private long endTime = OPEN_END;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public ReservationRequest() {
+    }
+
+    public ReservationRequest(String username, String buildingName, String roomName, String reservationNumber) {
+        this.username = username;
+        this.buildingName = buildingName;
+        this.roomName = roomName;
+        this.reservationNumber = reservationNumber;
+    }
+
+    public ReservationRequest(String username, String buildingName, String roomName, String reservationNumber,
+                              long startTime, long endTime) {
+        this(username, buildingName, roomName, reservationNumber);
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getBuildingName() {
+        return buildingName;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public String getReservationNumber() {
+        return reservationNumber;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setBuildingName(String buildingName) {
+        this.buildingName = buildingName;
+    }
+
+    public void setRoomName(String roomName) {
+        this.roomName = roomName;
+    }
+
+    public void setReservationNumber(String reservationNumber) {
+        this.reservationNumber = reservationNumber;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public void setEndTime(long endTime) {
+        this.endTime = endTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationRequest{" +
+                "username='" + username + '\'' +
+                ", buildingName='" + buildingName + '\'' +
+                ", roomName='" + roomName + '\'' +
+                ", reservationNumber='" + reservationNumber + '\'' +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                '}';
+    }
+}
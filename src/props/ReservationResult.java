@@ -0,0 +1,77 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of one reservation of a {@link ReservationBatch}. The status is the message type a single request would have
+ * been answered with, e.g. RESERVATION_NUMBER or ALREADY_BOOKED, and the detail the text of that answer.
+ */
+public class ReservationResult {
+    @JsonProperty("request")
+    private ReservationRequest request;
+    @JsonProperty("status")
+    private MessageType status;
+    @JsonProperty("detail")
+    private String detail;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public ReservationResult() {
+    }
+
+    /**
+     * @param request The reservation, with its number once it is known.
+     * @param status  The answer to the reservation.
+     * @param detail  The text of the answer.
+     */
+    public ReservationResult(ReservationRequest request, MessageType status, String detail) {
+        this.request = request;
+        this.status = status;
+        this.detail = detail;
+    }
+
+    public ReservationRequest getRequest() {
+        return request;
+    }
+
+    public MessageType getStatus() {
+        return status;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return true if the reservation was made, confirmed or cancelled as requested.
+     */
+    @JsonIgnore
+    public boolean isSuccessful() {
+        return status == MessageType.RESERVATION_NUMBER
+                || status == MessageType.CONFIRM_RESERVATION
+                || status == MessageType.RESERVATION_CANCELLED;
+    }
+
+    public void setRequest(ReservationRequest request) {
+        this.request = request;
+    }
+
+    public void setStatus(MessageType status) {
+        this.status = status;
+    }
+
+    public void setDetail(String detail) {
+        this.detail = detail;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationResult{" +
+                "request=" + request +
+                ", status=" + status +
+                ", detail='" + detail + '\'' +
+                '}';
+    }
+}
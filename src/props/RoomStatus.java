@@ -0,0 +1,56 @@
+package props;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One room of an {@link AvailabilityPage}.
+ */
+public class RoomStatus {
+    @JsonProperty("buildingName")
+    private String buildingName;
+    @JsonProperty("roomName")
+    private String roomName;
+    @JsonProperty("booked")
+    private boolean booked;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public RoomStatus() {
+    }
+
+    public RoomStatus(String buildingName, String roomName, boolean booked) {
+        this.buildingName = buildingName;
+        this.roomName = roomName;
+        this.booked = booked;
+    }
+
+    public String getBuildingName() {
+        return buildingName;
+    }
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    public boolean isBooked() {
+        return booked;
+    }
+
+    public void setBuildingName(String buildingName) {
+        this.buildingName = buildingName;
+    }
+
+    public void setRoomName(String roomName) {
+        this.roomName = roomName;
+    }
+
+    public void setBooked(boolean booked) {
+        this.booked = booked;
+    }
+
+    @Override
+    public String toString() {
+        return buildingName + " " + roomName + " - " + (booked ? "Booked" : "Available");
+    }
+}
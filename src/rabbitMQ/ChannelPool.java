@@ -0,0 +1,218 @@
+package rabbitMQ;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Return;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of channels on one connection for publishing. A channel must not be used by two threads at the same time,
+ * so a channel is checked out for the duration of a publish. Every thread has a preferred channel it checks out first,
+ * which keeps a thread on the same channel and spreads the threads evenly over the pool. Only when that channel is busy
+ * the other channels are tried.
+ * With publisher confirms enabled every channel is put in confirm mode and each publish gets a future that is
+ * completed when the broker acknowledges or rejects the message. Mandatory messages the broker cannot route to any queue
+ * are returned, which fails their future even though the broker acknowledges them afterwards.
+ * <p>
+ * A confirmation only means the broker accepted the message and, if mandatory, put it into a queue. Queues are not
+ * durable and messages are not persistent, so messages still in a queue are lost if the broker restarts.
+ */
+public class ChannelPool {
+    private final Connection connection;
+    private final boolean publisherConfirms;
+    private final PooledChannel[] channels;
+    private final AtomicInteger nextPreferred = new AtomicInteger();
+    private final ThreadLocal<Integer> preferredChannel;
+
+    public ChannelPool(Connection connection, int size, boolean publisherConfirms) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Channel pool size must be positive: " + size);
+        }
+        this.connection = connection;
+        this.publisherConfirms = publisherConfirms;
+        this.channels = new PooledChannel[size];
+        for (int i = 0; i < size; i++) {
+            channels[i] = new PooledChannel(this);
+        }
+        this.preferredChannel = ThreadLocal.withInitial(() -> Math.floorMod(nextPreferred.getAndIncrement(), size));
+    }
+
+    /**
+     * Checks out a channel. The caller has to close the returned {@link PooledChannel} to give the channel back,
+     * preferably with try-with-resources.
+     *
+     * @return A channel that is used only by the calling thread until it is closed.
+     * @throws IOException Throws if a closed channel cannot be reopened.
+     */
+    public PooledChannel acquire() throws IOException {
+        int preferred = preferredChannel.get();
+        for (int i = 0; i < channels.length; i++) {
+            PooledChannel candidate = channels[(preferred + i) % channels.length];
+            if (candidate.lock.tryLock()) {
+                return candidate.open();
+            }
+        }
+        PooledChannel channel = channels[preferred];
+        channel.lock.lock();
+        return channel.open();
+    }
+
+    public boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    public int size() {
+        return channels.length;
+    }
+
+    public static class PooledChannel implements AutoCloseable {
+        private final ChannelPool pool;
+        private final ReentrantLock lock = new ReentrantLock();
+        private Channel channel;
+        private ConfirmTracker confirmTracker;
+
+        private PooledChannel(ChannelPool pool) {
+            this.pool = pool;
+        }
+
+        private PooledChannel open() throws IOException {
+            try {
+                if (channel == null || !channel.isOpen()) {
+                    channel = pool.connection.createChannel();
+                    confirmTracker = pool.publisherConfirms ? new ConfirmTracker(channel) : null;
+                    if (confirmTracker == null) {
+                        channel.addReturnListener(returned -> System.err.println("Message to "
+                                + returned.getExchange() + "/" + returned.getRoutingKey() + " could not be routed: "
+                                + returned.getReplyText()));
+                    }
+                }
+                return this;
+            } catch (IOException | RuntimeException e) {
+                lock.unlock();
+                throw e;
+            }
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        /**
+         * Publishes a message on this channel.
+         *
+         * @param mandatory If true, the broker returns the message when no queue is bound for it instead of dropping it.
+         * @return A future completed when the broker confirmed the message, or an already completed future when
+         * publisher confirms are disabled. It fails if the broker rejected or returned the message.
+         * @throws IOException Throws if the message cannot be written to the channel.
+         */
+        public CompletableFuture<Void> publish(String exchange, String routingKey, boolean mandatory,
+                                               AMQP.BasicProperties properties, byte[] body) throws IOException {
+            if (confirmTracker == null) {
+                channel.basicPublish(exchange, routingKey, mandatory, properties, body);
+                return CompletableFuture.completedFuture(null);
+            }
+            return confirmTracker.publish(exchange, routingKey, mandatory, properties, body);
+        }
+
+        /**
+         * Gives the channel back to the pool.
+         */
+        @Override
+        public void close() {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tracks the publishes of one channel that the broker has not confirmed yet, keyed by publish sequence number.
+     * The broker coalesces confirms by acknowledging every sequence number up to a tag at once, which completes the
+     * whole head of the map in one go. A mandatory message carries its sequence number as message ID, so the broker's
+     * return, which arrives before the acknowledgement, can fail the right future.
+     */
+    private static class ConfirmTracker {
+        private final Channel channel;
+        private final ConcurrentNavigableMap<Long, CompletableFuture<Void>> outstanding = new ConcurrentSkipListMap<>();
+
+        private ConfirmTracker(Channel channel) throws IOException {
+            this.channel = channel;
+            channel.confirmSelect();
+            channel.addConfirmListener(this::handleAck, this::handleNack);
+            channel.addReturnListener(this::handleReturn);
+            channel.addShutdownListener(cause -> failAll(cause));
+        }
+
+        private CompletableFuture<Void> publish(String exchange, String routingKey, boolean mandatory,
+                                                AMQP.BasicProperties properties, byte[] body) throws IOException {
+            long sequenceNumber = channel.getNextPublishSeqNo();
+            CompletableFuture<Void> confirmation = new CompletableFuture<>();
+            outstanding.put(sequenceNumber, confirmation);
+            try {
+                if (mandatory) {
+                    properties = properties.builder().messageId(Long.toString(sequenceNumber)).build();
+                }
+                channel.basicPublish(exchange, routingKey, mandatory, properties, body);
+            } catch (IOException | RuntimeException e) {
+                outstanding.remove(sequenceNumber);
+                throw e;
+            }
+            return confirmation;
+        }
+
+        private void handleAck(long deliveryTag, boolean multiple) {
+            if (multiple) {
+                Map<Long, CompletableFuture<Void>> confirmed = outstanding.headMap(deliveryTag, true);
+                confirmed.values().forEach(confirmation -> confirmation.complete(null));
+                confirmed.clear();
+            } else {
+                CompletableFuture<Void> confirmation = outstanding.remove(deliveryTag);
+                if (confirmation != null) {
+                    confirmation.complete(null);
+                }
+            }
+        }
+
+        private void handleNack(long deliveryTag, boolean multiple) {
+            if (multiple) {
+                Map<Long, CompletableFuture<Void>> rejected = outstanding.headMap(deliveryTag, true);
+                rejected.forEach((tag, confirmation) -> confirmation.completeExceptionally(
+                        new IOException("The broker rejected message " + tag)));
+                rejected.clear();
+            } else {
+                CompletableFuture<Void> confirmation = outstanding.remove(deliveryTag);
+                if (confirmation != null) {
+                    confirmation.completeExceptionally(new IOException("The broker rejected message " + deliveryTag));
+                }
+            }
+        }
+
+        private void handleReturn(Return returned) {
+            String messageId = returned.getProperties() == null ? null : returned.getProperties().getMessageId();
+            CompletableFuture<Void> confirmation;
+            try {
+                confirmation = messageId == null ? null : outstanding.remove(Long.parseLong(messageId));
+            } catch (NumberFormatException e) {
+                confirmation = null;
+            }
+            IOException cause = new IOException("Message to " + returned.getExchange() + "/" + returned.getRoutingKey()
+                    + " could not be routed: " + returned.getReplyText());
+            if (confirmation != null) {
+                confirmation.completeExceptionally(cause);
+            } else {
+                System.err.println(cause.getMessage());
+            }
+        }
+
+        private void failAll(Exception cause) {
+            outstanding.values().forEach(confirmation -> confirmation.completeExceptionally(cause));
+            outstanding.clear();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package rabbitMQ;
+
+import props.Message;
+
+import java.util.function.Function;
+
+/**
+ * Settings of a queue consumer: how many unacknowledged messages it may hold and which threads run the callback.
+ * Messages are acknowledged after the callback returned. With more than one worker, messages with the same ordering
+ * key are still handled one after another in arrival order; messages without a key may be handled in any order.
+ * A worker count of 0 runs the callback directly on the thread that receives the message.
+ */
+public class ConsumerOptions {
+    /**
+     * System properties for the defaults. Each can be overridden for a single queue by appending ".&lt;queue name&gt;".
+     */
+    public static final String PREFETCH_PROPERTY = "booking.consumer.prefetch";
+    public static final String WORKERS_PROPERTY = "booking.consumer.workers";
+    public static final String VIRTUAL_THREADS_PROPERTY = "booking.consumer.virtualThreads";
+    private static final int DEFAULT_PREFETCH = 64;
+    private static final int DEFAULT_WORKERS = 1;
+
+    private final int prefetch;
+    private final int workers;
+    private final boolean virtualThreads;
+    private final Function<Message, Object> orderingKey;
+
+    public ConsumerOptions(int prefetch, int workers, boolean virtualThreads, Function<Message, Object> orderingKey) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("Prefetch must be positive: " + prefetch);
+        }
+        if (workers < 0) {
+            throw new IllegalArgumentException("Worker count must not be negative: " + workers);
+        }
+        this.prefetch = prefetch;
+        this.workers = workers;
+        this.virtualThreads = virtualThreads;
+        this.orderingKey = orderingKey;
+    }
+
+    /**
+     * Returns the options configured for a queue through the system properties.
+     *
+     * @param queueName The queue the options are for.
+     */
+    public static ConsumerOptions forQueue(String queueName) {
+        return forQueue(queueName, Integer.getInteger(WORKERS_PROPERTY, DEFAULT_WORKERS));
+    }
+
+    /**
+     * Returns the options configured for a queue through the system properties, using the given worker count unless
+     * one is configured for the queue.
+     *
+     * @param queueName      The queue the options are for.
+     * @param defaultWorkers The worker count used when the queue has no worker count of its own.
+     */
+    public static ConsumerOptions forQueue(String queueName, int defaultWorkers) {
+        int prefetch = Integer.getInteger(PREFETCH_PROPERTY + "." + queueName, Integer.getInteger(PREFETCH_PROPERTY, DEFAULT_PREFETCH));
+        int workers = Integer.getInteger(WORKERS_PROPERTY + "." + queueName, defaultWorkers);
+        boolean virtualThreads = Boolean.parseBoolean(System.getProperty(VIRTUAL_THREADS_PROPERTY + "." + queueName,
+                System.getProperty(VIRTUAL_THREADS_PROPERTY, "false")));
+        return new ConsumerOptions(prefetch, workers, virtualThreads, null);
+    }
+
+    public ConsumerOptions withWorkers(int workerCount) {
+        return new ConsumerOptions(prefetch, workerCount, virtualThreads, orderingKey);
+    }
+
+    /**
+     * @param keyFunction Returns the key of a message whose order has to be kept, or null if the order does not matter.
+     */
+    public ConsumerOptions withOrderingKey(Function<Message, Object> keyFunction) {
+        return new ConsumerOptions(prefetch, workers, virtualThreads, keyFunction);
+    }
+
+    public int getPrefetch() {
+        return prefetch;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public Function<Message, Object> getOrderingKey() {
+        return orderingKey;
+    }
+}
@@ -0,0 +1,60 @@
+package rabbitMQ;
+
+import props.Message;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Fixed set of single-threaded lanes that run the callbacks of one queue consumer. A message with an ordering key always
+ * goes to the same lane, so messages with equal keys are handled in the order they arrived. Messages without a key are
+ * spread round-robin over the lanes.
+ */
+public class ConsumerWorkerPool {
+    private final ExecutorService[] lanes;
+    private final Function<Message, Object> orderingKey;
+    private final AtomicInteger nextLane = new AtomicInteger();
+
+    public ConsumerWorkerPool(String queueName, ConsumerOptions options) {
+        ThreadFactory threadFactory = options.isVirtualThreads()
+                ? Thread.ofVirtual().name(queueName + "-worker-", 0).factory()
+                : Thread.ofPlatform().name(queueName + "-worker-", 0).daemon(true).factory();
+        this.lanes = new ExecutorService[options.getWorkers()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+        this.orderingKey = options.getOrderingKey();
+    }
+
+    /**
+     * Runs the handling of a message on the lane of its ordering key, or on the calling thread when the pool has no lanes.
+     *
+     * @param message The message being handled, used to find its ordering key.
+     * @param task    The handling of the message.
+     */
+    public void execute(Message message, Runnable task) {
+        if (lanes.length == 0) {
+            task.run();
+            return;
+        }
+        lanes[laneFor(message)].execute(task);
+    }
+
+    private int laneFor(Message message) {
+        Object key = orderingKey == null ? null : orderingKey.apply(message);
+        if (key == null) {
+            return Math.floorMod(nextLane.getAndIncrement(), lanes.length);
+        }
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
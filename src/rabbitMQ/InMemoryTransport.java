@@ -0,0 +1,202 @@
+package rabbitMQ;
+
+import metrics.MessageMetrics;
+import metrics.MessageStats;
+import props.Message;
+import tracing.Span;
+import tracing.Tracer;
+import utils.RingBuffer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Transport for running every component in one JVM without a broker. Queues are bounded {@link RingBuffer}s and the
+ * {@link Message} objects are handed over as they are, without serializing them.
+ * Each queue that has consumers is drained by its own dispatcher thread, which passes the messages round-robin to the
+ * worker pools of the consumers like RabbitMQ does. A publisher waits while a queue is full.
+ */
+public class InMemoryTransport implements MessageTransport {
+    /**
+     * System property for the number of messages a queue holds before publishers have to wait.
+     */
+    public static final String QUEUE_CAPACITY_PROPERTY = "booking.transport.queueCapacity";
+    private static final int DEFAULT_QUEUE_CAPACITY = 65536;
+    private static final long FULL_QUEUE_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int queueCapacity;
+    private final Map<String, LocalQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, Set<LocalQueue>> bindings = new ConcurrentHashMap<>();
+
+    public InMemoryTransport() {
+        this(Integer.getInteger(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    public InMemoryTransport(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(RabbitMQExchanges exchange, String queueName, String routingKey, Message message) {
+        if (queueName != null) {
+            declareAndBind(exchange, queueName, routingKey);
+        }
+        if (MessageMetrics.ENABLED) {
+            // Messages are handed over without encoding, so there are no bytes or serialization time to record
+            MessageMetrics.of(exchange.metricsName(queueName, routingKey), message.getType()).published(0, -1);
+        }
+        Set<LocalQueue> boundQueues = bindings.get(bindingKey(exchange, routingKey));
+        if (boundQueues == null) {
+            // Like the broker, messages that match no binding are dropped
+            return CompletableFuture.completedFuture(null);
+        }
+        for (LocalQueue queue : boundQueues) {
+            queue.enqueue(message);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void subscribe(RabbitMQExchanges exchange, String queueName, String routingKey, Consumer<Message> callback,
+                          ConsumerOptions options) {
+        declareAndBind(exchange, queueName, routingKey).addConsumer(new Subscription(queueName, callback, options));
+    }
+
+    private LocalQueue declareAndBind(RabbitMQExchanges exchange, String queueName, String routingKey) {
+        LocalQueue queue = queues.computeIfAbsent(queueName, name -> new LocalQueue(name, queueCapacity));
+        bindings.computeIfAbsent(bindingKey(exchange, routingKey), key -> ConcurrentHashMap.newKeySet()).add(queue);
+        return queue;
+    }
+
+    private static String bindingKey(RabbitMQExchanges exchange, String routingKey) {
+        String key = exchange.isFanout() || routingKey == null ? "" : routingKey;
+        return exchange.getExchangeName() + '/' + key;
+    }
+
+    private static final class LocalQueue implements Runnable {
+        private final String name;
+        private final RingBuffer<Message> buffer;
+        private final List<Subscription> consumers = new CopyOnWriteArrayList<>();
+        private volatile Thread dispatcher;
+        private volatile boolean waiting;
+        private int nextConsumer;
+
+        LocalQueue(String name, int capacity) {
+            this.name = name;
+            this.buffer = new RingBuffer<>(capacity);
+        }
+
+        void enqueue(Message message) {
+            while (!buffer.offer(message)) {
+                wakeDispatcher();
+                LockSupport.parkNanos(FULL_QUEUE_BACKOFF_NANOS);
+            }
+            if (waiting) {
+                wakeDispatcher();
+            }
+        }
+
+        synchronized void addConsumer(Subscription subscription) {
+            consumers.add(subscription);
+            if (dispatcher == null) {
+                Thread thread = new Thread(this, "inmemory-" + name);
+                thread.setDaemon(true);
+                dispatcher = thread;
+                thread.start();
+            }
+        }
+
+        private void wakeDispatcher() {
+            Thread thread = dispatcher;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                Message message = buffer.poll();
+                if (message == null) {
+                    // Publishers check the flag after offering, so either they see it or we see their message
+                    waiting = true;
+                    if (buffer.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+                try {
+                    deliver(message);
+                } catch (Exception e) {
+                    // The message is lost, like one whose callback failed, but the queue keeps dispatching
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void deliver(Message message) {
+            consumers.get(Math.floorMod(nextConsumer++, consumers.size())).deliver(message);
+        }
+    }
+
+    /**
+     * A consumer of a queue. The permits stand in for the unacknowledged messages a broker consumer may hold:
+     * one is taken before a message is handed to the worker pool and returned when its callback finished.
+     */
+    private static final class Subscription {
+        private final String queueName;
+        private final String metricsName;
+        private final Consumer<Message> callback;
+        private final ConsumerWorkerPool workers;
+        private final Semaphore unacknowledged;
+
+        Subscription(String queueName, Consumer<Message> callback, ConsumerOptions options) {
+            this.queueName = queueName;
+            this.metricsName = RabbitMQExchanges.metricsNameOf(queueName);
+            this.callback = callback;
+            this.workers = new ConsumerWorkerPool(queueName, options);
+            this.unacknowledged = new Semaphore(options.getPrefetch());
+        }
+
+        void deliver(Message message) {
+            unacknowledged.acquireUninterruptibly();
+            MessageStats stats = MessageMetrics.ENABLED ? MessageMetrics.of(metricsName, message.getType()) : null;
+            if (stats != null) {
+                stats.received(0, -1);
+            }
+            Runnable task = () -> {
+                long started = System.nanoTime();
+                boolean successful = false;
+                Span span = null;
+                try {
+                    span = Tracer.startSpan(queueName, message);
+                    callback.accept(message);
+                    successful = true;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    Tracer.endSpan(span);
+                    if (stats != null) {
+                        stats.handled(System.nanoTime() - started, successful);
+                    }
+                    unacknowledged.release();
+                }
+            };
+            try {
+                workers.execute(message, task);
+            } catch (RuntimeException e) {
+                unacknowledged.release();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package rabbitMQ;
+
+import props.Message;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Moves {@link Message} objects between the components of the system. {@link Sender} and {@link Receiver}
+ * delegate to the transport returned by {@link TransportProvider#getTransport()}.
+ * Implementations keep the exchange/queue/routing-key model of RabbitMQ: a direct exchange delivers a message to
+ * every queue bound with the same routing key, a fanout exchange delivers it to every bound queue.
+ */
+public interface MessageTransport {
+
+    /**
+     * Publishes a message to an exchange. When a queue name is given the queue is declared and bound to the
+     * exchange first, so the message is kept until a consumer subscribes to it.
+     *
+     * @param exchange   The exchange to publish to.
+     * @param queueName  The queue to declare and bind before publishing, or null to only publish.
+     * @param routingKey The routing key of the message. Ignored by fanout exchanges.
+     * @param message    The message to publish.
+     * @return A future completed once the transport has taken responsibility for the message, or completed
+     * exceptionally when the message was rejected.
+     * @throws Exception Throws if publishing fails.
+     */
+    CompletableFuture<Void> publish(RabbitMQExchanges exchange, String queueName, String routingKey, Message message) throws Exception;
+
+    /**
+     * Declares a queue, binds it to an exchange and starts passing the messages of the queue to the callback.
+     * A message counts as handled once the callback returned, at most {@link ConsumerOptions#getPrefetch()} messages
+     * are handed to the consumer before that.
+     *
+     * @param exchange   The exchange the queue is bound to.
+     * @param queueName  The queue to consume messages from.
+     * @param routingKey The routing key used for the binding. Ignored by fanout exchanges.
+     * @param callback   The action to perform on received messages.
+     * @param options    Prefetch and worker threads of the consumer.
+     * @throws Exception Throws if subscribing fails.
+     */
+    void subscribe(RabbitMQExchanges exchange, String queueName, String routingKey, Consumer<Message> callback,
+                   ConsumerOptions options) throws Exception;
+}
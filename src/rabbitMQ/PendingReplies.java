@@ -0,0 +1,90 @@
+package rabbitMQ;
+
+import props.Message;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests of one requester that wait for their reply. Each request gets a correlation ID, which the replier copies
+ * into the reply, and a future that is completed with the reply or fails after the timeout. Replies arrive on the
+ * routing key of the requester, so any number of requests can be in flight at once.
+ */
+public class PendingReplies {
+    private final String replyTo;
+    private final long timeoutMillis;
+    /**
+     * Makes the correlation IDs of this requester differ from those of earlier runs, whose replies may still be queued.
+     */
+    private final String idPrefix = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36) + '-';
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<String, CompletableFuture<Message>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param replyTo       The routing key on the direct exchange the replies are sent to.
+     * @param timeoutMillis How long a request waits for its reply.
+     */
+    public PendingReplies(String replyTo, long timeoutMillis) {
+        this.replyTo = replyTo;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sets the correlation ID and reply-to address of the request and registers it before it is sent, so its reply
+     * cannot arrive before it is expected.
+     *
+     * @param request The request to be sent.
+     * @return A future completed with the reply, or with a {@link java.util.concurrent.TimeoutException} if no reply
+     * arrived in time.
+     */
+    public CompletableFuture<Message> expect(Message request) {
+        String correlationId = idPrefix + nextId.incrementAndGet();
+        request.setCorrelationId(correlationId);
+        request.setReplyTo(replyTo);
+        CompletableFuture<Message> reply = new CompletableFuture<>();
+        pending.put(correlationId, reply);
+        reply.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((message, error) -> pending.remove(correlationId, reply));
+        return reply;
+    }
+
+    /**
+     * Completes the request the reply belongs to.
+     *
+     * @param reply A message received on the reply-to address.
+     * @return false if no request waits for the reply, e.g. because it timed out.
+     */
+    public boolean complete(Message reply) {
+        String correlationId = reply.getCorrelationId();
+        CompletableFuture<Message> request = correlationId == null ? null : pending.get(correlationId);
+        return request != null && request.complete(reply);
+    }
+
+    /**
+     * Fails a request that could not be sent.
+     *
+     * @param request The request as passed to {@link #expect(Message)}.
+     * @param error   The reason the request failed.
+     */
+    public void fail(Message request, Throwable error) {
+        CompletableFuture<Message> reply = pending.get(request.getCorrelationId());
+        if (reply != null) {
+            reply.completeExceptionally(error);
+        }
+    }
+
+    public String getReplyTo() {
+        return replyTo;
+    }
+
+    /**
+     * @return The number of requests waiting for their reply.
+     */
+    public int size() {
+        return pending.size();
+    }
+}
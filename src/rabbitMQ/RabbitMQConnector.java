@@ -3,15 +3,27 @@ package rabbitMQ;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Recoverable;
+import com.rabbitmq.client.RecoveryListener;
 
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 
 public class RabbitMQConnector {
-    private static Connection connection;
-    private static Channel channel;
+    private static volatile Connection connection;
+    private static volatile ChannelPool channelPool;
     private static final String HOST = "localhost";
     private static final int PORT = 5672;
+    private static final int CHANNEL_POOL_SIZE = Integer.getInteger("booking.rabbitmq.channelPoolSize",
+            Runtime.getRuntime().availableProcessors());
+    private static final boolean PUBLISHER_CONFIRMS = Boolean.parseBoolean(
+            System.getProperty("booking.rabbitmq.publisherConfirms", "true"));
+    /**
+     * Exchanges, queues and bindings already declared on the current connection.
+     */
+    private static final Set<String> declaredTopology = ConcurrentHashMap.newKeySet();
 
     /**
      * Handle the connection of RabbitMQ. Singleton is used to create only one connection in whole process.
@@ -23,21 +35,73 @@ public class RabbitMQConnector {
             factory.setUsername("guest");
             factory.setPassword("guest");
             factory.setPort(PORT);
+            factory.setAutomaticRecoveryEnabled(true);
             connection = factory.newConnection();
+            declaredTopology.clear();
+            channelPool = new ChannelPool(connection, CHANNEL_POOL_SIZE, PUBLISHER_CONFIRMS);
+            if (connection instanceof Recoverable recoverable) {
+                recoverable.addRecoveryListener(new RecoveryListener() {
+                    @Override
+                    public void handleRecovery(Recoverable recovered) {
+                        // The broker may have lost non-durable topology, declare it again on next use
+                        declaredTopology.clear();
+                    }
+
+                    @Override
+                    public void handleRecoveryStarted(Recoverable recovering) {
+                    }
+                });
+            }
         }
         return connection;
     }
+
     /**
-     * Get the default channel of the exist connection
+     * Checks out a publishing channel from the pool of the current connection. Close the returned channel to give it back.
      */
-    public static synchronized Channel getChannel() throws IOException, TimeoutException {
-        if (channel == null || !channel.isOpen()) {
-            if (connection == null || !connection.isOpen()) {
+    public static ChannelPool.PooledChannel acquireChannel() throws IOException, TimeoutException {
+        ChannelPool pool = channelPool;
+        if (pool == null || !pool.isOpen()) {
+            synchronized (RabbitMQConnector.class) {
                 getConnection();
+                pool = channelPool;
             }
-            channel = connection.createChannel();
         }
-        return channel;
+        return pool.acquire();
+    }
+
+    /**
+     * Declares an exchange and optionally a queue bound to it, unless they were already declared on this connection.
+     * Declarations are remembered until the connection is replaced or recovered.
+     *
+     * @param channel    The channel used to declare.
+     * @param exchange   The exchange to declare.
+     * @param queueName  Name of the queue, or null to declare only the exchange.
+     * @param routingKey Routing key for the binding.
+     * @throws IOException Throws if a declaration fails.
+     */
+    public static void declareTopology(Channel channel, RabbitMQExchanges exchange, String queueName, String routingKey) throws IOException {
+        String exchangeKey = "exchange/" + exchange.getExchangeName();
+        if (!declaredTopology.contains(exchangeKey)) {
+            channel.exchangeDeclare(exchange.getExchangeName(), exchange.getExchangeType());
+            declaredTopology.add(exchangeKey);
+        }
+        if (queueName == null) {
+            return;
+        }
+        String queueKey = "queue/" + queueName;
+        if (!declaredTopology.contains(queueKey)) {
+            // Reply and notification queues belong to one client and are deleted by the broker once the client stops consuming
+            boolean autoDelete = queueName.startsWith(RoutingConfig.CLIENT_REPLY_QUEUE.getValue() + '.')
+                    || queueName.startsWith(RoutingConfig.CLIENT_NOTIFICATION_QUEUE.getValue() + '.');
+            channel.queueDeclare(queueName, false, false, autoDelete, null);
+            declaredTopology.add(queueKey);
+        }
+        String bindingKey = "binding/" + queueName + '/' + exchange.getExchangeName() + '/' + routingKey;
+        if (!declaredTopology.contains(bindingKey)) {
+            channel.queueBind(queueName, exchange.getExchangeName(), routingKey);
+            declaredTopology.add(bindingKey);
+        }
     }
 
 }
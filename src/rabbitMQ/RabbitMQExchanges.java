@@ -1,16 +1,53 @@
 package rabbitMQ;
 
 public enum RabbitMQExchanges {
-    FANOUT_BUILDINGS("buildings_fanout"),
-    DIRECT_RENTAL("rental_direct");
+    FANOUT_BUILDINGS("buildings_fanout", "fanout"),
+    DIRECT_RENTAL("rental_direct", "direct"),
+    FANOUT_AVAILABILITY("availability_fanout", "fanout");
 
     private final String exchangeName;
+    private final String exchangeType;
 
-    RabbitMQExchanges(String exchangeName) {
+    RabbitMQExchanges(String exchangeName, String exchangeType) {
         this.exchangeName = exchangeName;
+        this.exchangeType = exchangeType;
     }
 
     public String getExchangeName() {
         return exchangeName;
     }
+
+    public String getExchangeType() {
+        return exchangeType;
+    }
+
+    public boolean isFanout() {
+        return "fanout".equals(exchangeType);
+    }
+
+    /**
+     * @return The name the metrics count a published message under: its queue, or without one the exchange for
+     * fanout exchanges and the routing key for direct ones, as given by {@link #metricsNameOf(String)}.
+     */
+    String metricsName(String queueName, String routingKey) {
+        if (queueName != null) {
+            return metricsNameOf(queueName);
+        }
+        return isFanout() || routingKey == null ? exchangeName : metricsNameOf(routingKey);
+    }
+
+    /**
+     * @return The name the metrics count a queue under. The reply and notification queues of every client have a
+     * random name of their own, so they are counted together under their common prefix; otherwise every client that
+     * was ever started would keep its own metrics.
+     */
+    static String metricsNameOf(String queueName) {
+        for (RoutingConfig perClient : new RoutingConfig[]{RoutingConfig.CLIENT_REPLY_QUEUE, RoutingConfig.CLIENT_NOTIFICATION_QUEUE}) {
+            String prefix = perClient.getValue();
+            if (queueName.startsWith(prefix) && queueName.length() > prefix.length() && queueName.charAt(prefix.length()) == '.') {
+                return prefix;
+            }
+        }
+        return queueName;
+    }
 }
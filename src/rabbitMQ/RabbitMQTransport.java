@@ -0,0 +1,173 @@
+package rabbitMQ;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import metrics.MessageMetrics;
+import metrics.MessageStats;
+import props.Message;
+import tracing.Span;
+import tracing.Tracer;
+import utils.MessageCodec;
+import utils.MessageCodecs;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Transport that sends every message through the RabbitMQ broker, encoded with the codec from
+ * {@link MessageCodecs#getDefault()}. The content type property tells the receiver which codec to decode with.
+ */
+public class RabbitMQTransport implements MessageTransport {
+    private final MessageCodec codec = MessageCodecs.getDefault();
+    private final AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+            .contentType(codec.getContentType())
+            .build();
+
+    @Override
+    public CompletableFuture<Void> publish(RabbitMQExchanges exchange, String queueName, String routingKey, Message message) throws Exception {
+        MessageStats stats = MessageMetrics.ENABLED
+                ? MessageMetrics.of(exchange.metricsName(queueName, routingKey), message.getType()) : null;
+        try {
+            long started = System.nanoTime();
+            byte[] body = codec.encode(message);
+            if (stats != null) {
+                stats.published(body.length, System.nanoTime() - started);
+            }
+            CompletableFuture<Void> confirmed;
+            try (ChannelPool.PooledChannel pooledChannel = RabbitMQConnector.acquireChannel()) {
+                RabbitMQConnector.declareTopology(pooledChannel.getChannel(), exchange, queueName, bindingKey(exchange, routingKey));
+                // Fanout messages may have no subscriber yet; other messages that reach no queue fail their future
+                confirmed = publishMessage(exchange.getExchangeName(), bindingKey(exchange, routingKey), !exchange.isFanout(),
+                        body, pooledChannel);
+            }
+            if (stats != null) {
+                confirmed.whenComplete((sent, error) -> {
+                    if (error != null) {
+                        stats.publishFailed();
+                    }
+                });
+            }
+            return confirmed;
+        } catch (Exception e) {
+            if (stats != null) {
+                stats.publishFailed();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void subscribe(RabbitMQExchanges exchange, String queueName, String routingKey, Consumer<Message> callback,
+                          ConsumerOptions options) throws Exception {
+        Channel channel = RabbitMQConnector.getConnection().createChannel();
+        RabbitMQConnector.declareTopology(channel, exchange, queueName, bindingKey(exchange, routingKey));
+        configureMessageConsumer(channel, queueName, callback, options);
+    }
+
+    /**
+     * Publishes a message to a specified exchange using a routing key.
+     *
+     * @param exchange   The exchange to publish to.
+     * @param routingKey The routing key for the message.
+     * @param mandatory  If true, the message is returned and its future fails when no queue takes it.
+     * @param body       The serialized message to publish.
+     * @param channel    The channel used for publishing.
+     * @return A future completed when the broker confirmed the message.
+     * @throws Exception Throws if publishing fails.
+     */
+    private CompletableFuture<Void> publishMessage(String exchange, String routingKey, boolean mandatory, byte[] body,
+                                                   ChannelPool.PooledChannel channel) throws Exception {
+        return channel.publish(exchange, routingKey, mandatory, properties, body);
+    }
+
+    /**
+     * Configures a consumer to receive messages and process them using the provided callback on the worker pool of the queue.
+     * A message is acknowledged after the callback finished. Messages that cannot be read, cannot be handed to a worker
+     * or whose callback failed are rejected without requeueing, so they cannot block the queue.
+     *
+     * @param channel   The channel to receive messages from.
+     * @param queueName The queue to consume messages from.
+     * @param callback  The action to perform on received messages.
+     * @param options   Prefetch and worker threads of the consumer.
+     * @throws Exception Throws if consuming messages fails.
+     */
+    private void configureMessageConsumer(Channel channel, String queueName, Consumer<Message> callback, ConsumerOptions options) throws Exception {
+        ConsumerWorkerPool workers = new ConsumerWorkerPool(queueName, options);
+        channel.basicQos(options.getPrefetch());
+        String metricsName = RabbitMQExchanges.metricsNameOf(queueName);
+        DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+            long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+            long started = System.nanoTime();
+            Message message;
+            try {
+                message = MessageCodecs.forContentType(delivery.getProperties().getContentType()).decode(delivery.getBody());
+            } catch (Exception e) {
+                e.printStackTrace();
+                if (MessageMetrics.ENABLED) {
+                    MessageMetrics.of(metricsName, null).receiveFailed();
+                }
+                channel.basicNack(deliveryTag, false, false);
+                return;
+            }
+            MessageStats stats = null;
+            if (MessageMetrics.ENABLED) {
+                stats = MessageMetrics.of(metricsName, message.getType());
+                stats.received(delivery.getBody().length, System.nanoTime() - started);
+            }
+            MessageStats messageStats = stats;
+            try {
+                workers.execute(message, () -> handleDelivery(channel, queueName, deliveryTag, message, callback, messageStats));
+            } catch (Exception e) {
+                // Thrown by the ordering key or by a lane that is shut down; escaping would close the channel
+                e.printStackTrace();
+                if (stats != null) {
+                    stats.receiveFailed();
+                }
+                channel.basicNack(deliveryTag, false, false);
+            }
+        };
+        channel.basicConsume(queueName, false, deliverCallback, consumerTag -> workers.shutdown());
+    }
+
+    /**
+     * Runs the callback for a message and acknowledges it.
+     *
+     * @param stats The metrics of the message's type on its queue, or null if metrics are disabled.
+     */
+    private void handleDelivery(Channel channel, String queueName, long deliveryTag, Message message,
+                                Consumer<Message> callback, MessageStats stats) {
+        long started = System.nanoTime();
+        boolean handled = false;
+        Span span = null;
+        try {
+            span = Tracer.startSpan(queueName, message);
+            callback.accept(message);
+            handled = true;
+            recordHandled(stats, started, true);
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception e) {
+            if (!handled) {
+                recordHandled(stats, started, false);
+            }
+            e.printStackTrace();
+            try {
+                channel.basicNack(deliveryTag, false, false);
+            } catch (Exception nackFailure) {
+                nackFailure.printStackTrace();
+            }
+        } finally {
+            Tracer.endSpan(span);
+        }
+    }
+
+    private static void recordHandled(MessageStats stats, long started, boolean successful) {
+        if (stats != null) {
+            stats.handled(System.nanoTime() - started, successful);
+        }
+    }
+
+    private static String bindingKey(RabbitMQExchanges exchange, String routingKey) {
+        return exchange.isFanout() || routingKey == null ? "" : routingKey;
+    }
+}
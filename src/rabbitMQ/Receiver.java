@@ -1,8 +1,6 @@
 package rabbitMQ;
 
-import com.rabbitmq.client.*;
 import props.Message;
-import utils.JSONHandler;
 import java.util.function.Consumer;
 
 
@@ -16,54 +14,43 @@ public class Receiver {
      * @throws Exception Throws if any RabbitMQ operation fails.
      */
     public static void receiveDirectMessage(String queueName, String routingKey, Consumer<Message> callback) throws Exception {
-        Channel channel = setupDirectChannel(queueName, routingKey);
-        configureMessageConsumer(channel, queueName, callback);
+        receiveDirectMessage(queueName, routingKey, callback, ConsumerOptions.forQueue(queueName));
     }
 
     /**
-     * Sets up and returns a Channel for a direct exchange with the specified queue and routing key.
+     * Receives messages from a direct exchange in RabbitMQ with the given consumer options.
      *
-     * @param queueName  Name of the queue.
-     * @param routingKey Routing key for binding.
-     * @return Configured Channel.
-     * @throws Exception Throws if channel setup fails.
+     * @param queueName  The name of the queue from which messages are received.
+     * @param routingKey The routing key to bind the queue to the exchange.
+     * @param callback   A Consumer functional interface for processing received messages.
+     * @param options    Prefetch, worker threads and ordering of the consumer.
+     * @throws Exception Throws if any RabbitMQ operation fails.
      */
-    private static Channel setupDirectChannel(String queueName, String routingKey) throws Exception {
-        Channel channel = RabbitMQConnector.getConnection().createChannel();
-        channel.exchangeDeclare(RabbitMQExchanges.DIRECT_RENTAL.getExchangeName(), "direct");
-        channel.queueDeclare(queueName, false, false, false, null);
-        channel.queueBind(queueName, RabbitMQExchanges.DIRECT_RENTAL.getExchangeName(), routingKey);
-        return channel;
+    public static void receiveDirectMessage(String queueName, String routingKey, Consumer<Message> callback,
+                                            ConsumerOptions options) throws Exception {
+        TransportProvider.getTransport().subscribe(RabbitMQExchanges.DIRECT_RENTAL, queueName, routingKey, callback, options);
     }
 
+    /**
+     * Receives messages from the buildings fanout exchange in RabbitMQ.
+     *
+     * @param queueName The name of the queue from which messages are received.
+     * @param callback  A Consumer functional interface for processing received messages.
+     * @throws Exception Throws if any RabbitMQ operation fails.
+     */
     public static void receiveFanoutMessage(String queueName, Consumer<Message> callback) throws Exception {
-        Channel channel = RabbitMQConnector.getConnection().createChannel();
-        channel.exchangeDeclare(RabbitMQExchanges.FANOUT_BUILDINGS.getExchangeName(), "fanout");
-        channel.queueDeclare(queueName, false,false,false,null);
-        channel.queueBind(queueName, RabbitMQExchanges.FANOUT_BUILDINGS.getExchangeName(), "");
-
-        configureMessageConsumer(channel, queueName, callback);
+        receiveFanoutMessage(RabbitMQExchanges.FANOUT_BUILDINGS, queueName, callback);
     }
 
     /**
-     * Configures a consumer to receive messages, process them using the provided callback, and acknowledges the messages.
+     * Receives every message published to a fanout exchange on a queue bound to it.
      *
-     * @param channel  The channel to receive messages from.
-     * @param queueName The queue to consume messages from.
-     * @param callback The action to perform on received messages.
-     * @throws Exception Throws if consuming messages fails.
+     * @param exchange  The fanout exchange.
+     * @param queueName The queue to be bound to the exchange.
+     * @param callback  Is called with each received message.
      */
-    private static void configureMessageConsumer(Channel channel, String queueName, Consumer<Message> callback) throws Exception {
-        DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-            try {
-                String messageStr = new String(delivery.getBody(), "UTF-8");
-                Message message = JSONHandler.deserialize(messageStr);
-                callback.accept(message);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        };
-        channel.basicConsume(queueName, true, deliverCallback, consumerTag -> {});
+    public static void receiveFanoutMessage(RabbitMQExchanges exchange, String queueName, Consumer<Message> callback) throws Exception {
+        TransportProvider.getTransport().subscribe(exchange, queueName, "", callback, ConsumerOptions.forQueue(queueName));
     }
 
 }
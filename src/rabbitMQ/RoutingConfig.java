@@ -3,10 +3,10 @@ package rabbitMQ;
 public enum RoutingConfig {
     RENTAL_AGENT_QUEUE("RENTAL_AGENT_QUEUE"),
     RENTAL_AGENT_KEY("RENTAL_AGENT_KEY"),
-    CLIENT_QUEUE("CLIENT_QUEUE"),
+    RENTAL_AGENT_SHARD_QUEUE("RENTAL_AGENT_SHARD_QUEUE"),
+    CLIENT_REPLY_QUEUE("CLIENT_REPLY_QUEUE"),
     CLIENT_NOTIFICATION_QUEUE("CLIENT_NOTIFICATION_QUEUE"),
     BUILDING_MANAGER_QUEUE("BUILDING_MANAGER_QUEUE"),
-    CLIENT_KEY("CLIENT_KEY"),
     BUILDING_QUEUE("BUILDING_QUEUE"),
     BUILDING_KEY("BUILDING_KEY");
 
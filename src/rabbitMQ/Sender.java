@@ -1,9 +1,9 @@
 package rabbitMQ;
 
-import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
 import props.Message;
-import utils.JSONHandler;
+import tracing.Tracer;
+
+import java.util.concurrent.CompletableFuture;
 
 public class Sender {
 
@@ -13,47 +13,65 @@ public class Sender {
      * @param queueName  The queue name to send the message to.
      * @param routingKey The routing key for the message.
      * @param message    The message to be sent.
+     * @return A future completed when the broker confirmed the message, or completed exceptionally when it was not delivered.
      * @throws Exception Throws if the message sending fails.
      */
-    public void sendDirectMessage(String queueName, String routingKey, Message message) throws Exception {
+    public CompletableFuture<Void> sendDirectMessage(String queueName, String routingKey, Message message) throws Exception {
         try {
-            Channel channel = RabbitMQConnector.getChannel();
-            setupDirectExchange(queueName, routingKey, channel);
-            publishMessage(RabbitMQExchanges.DIRECT_RENTAL.getExchangeName(), routingKey, message, channel);
+            Tracer.inject(message, null);
+            return TransportProvider.getTransport().publish(RabbitMQExchanges.DIRECT_RENTAL, queueName, routingKey, message);
         } catch (Exception e) {
             e.printStackTrace();
+            return CompletableFuture.failedFuture(e);
         }
     }
 
     /**
-     * Sets up a direct exchange with a queue and a routing key.
+     * Sends a request to a direct exchange and waits for its reply.
      *
-     * @param queueName  Name of the queue.
-     * @param routingKey Routing key for the queue.
-     * @param channel    The channel used to set up the exchange.
-     * @throws Exception Throws if setup fails.
+     * @param queueName  The queue name to send the request to.
+     * @param routingKey The routing key for the request.
+     * @param request    The request to be sent. Its correlation ID and reply-to address are set.
+     * @param replies    The pending requests of the sender, which receive the reply.
+     * @return A future completed with the reply, or completed exceptionally if the request could not be sent
+     * or no reply arrived in time.
      */
-    private void setupDirectExchange(String queueName, String routingKey, Channel channel) throws Exception {
-        channel.exchangeDeclare(RabbitMQExchanges.DIRECT_RENTAL.getExchangeName(), "direct");
-        channel.queueDeclare(queueName, false, false, false, null);
-        channel.queueBind(queueName, RabbitMQExchanges.DIRECT_RENTAL.getExchangeName(), routingKey);
+    public CompletableFuture<Message> sendRequest(String queueName, String routingKey, Message request, PendingReplies replies) {
+        CompletableFuture<Message> reply = replies.expect(request);
+        try {
+            sendDirectMessage(queueName, routingKey, request).whenComplete((sent, error) -> {
+                if (error != null) {
+                    replies.fail(request, error);
+                }
+            });
+        } catch (Exception e) {
+            replies.fail(request, e);
+        }
+        return reply;
     }
 
     /**
-     * Publishes a message to a specified exchange using a routing key.
+     * Sends the reply to a request to the reply-to address of the request. The reply is published without declaring
+     * a queue, so it is dropped if the requester is gone. Requests without a reply-to address get no reply.
      *
-     * @param exchange   The exchange to publish to.
-     * @param routingKey The routing key for the message.
-     * @param message    The message to publish.
-     * @param channel    The channel used for publishing.
-     * @throws Exception Throws if publishing fails.
+     * @param request The request that is answered.
+     * @param reply   The reply. The correlation ID of the request is copied into it.
+     * @return A future completed when the broker confirmed the reply.
      */
-    private void publishMessage(String exchange, String routingKey, Message message, Channel channel) throws Exception {
-        String serializedMessage = JSONHandler.serialize(message);
-        channel.basicPublish(exchange, routingKey, null, serializedMessage.getBytes());
+    public CompletableFuture<Void> sendReply(Message request, Message reply) {
+        if (request.getReplyTo() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        reply.setCorrelationId(request.getCorrelationId());
+        try {
+            Tracer.inject(reply, request);
+            return TransportProvider.getTransport().publish(RabbitMQExchanges.DIRECT_RENTAL, null, request.getReplyTo(), reply);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
-
     /**
      * Sends a message to a fanout exchange on RabbitMQ.
      *
@@ -63,12 +81,8 @@ public class Sender {
      */
     public void sendFanoutMessage(RabbitMQExchanges exchange, Message message) throws Exception {
         try {
-            Channel channel = RabbitMQConnector.getChannel();
-            channel.exchangeDeclare(exchange.getExchangeName(), "fanout");
-
-            String serializedMessage = JSONHandler.serialize(message);
-
-            channel.basicPublish(exchange.getExchangeName(), "", null, serializedMessage.getBytes());
+            Tracer.inject(message, null);
+            TransportProvider.getTransport().publish(exchange, null, "", message);
         } catch (Exception e){
             e.printStackTrace();
         }
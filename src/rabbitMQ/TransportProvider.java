@@ -0,0 +1,30 @@
+package rabbitMQ;
+
+public class TransportProvider {
+    /**
+     * System property selecting the transport: "rabbitmq" (default) or "inmemory" to run every component
+     * in this JVM without a broker.
+     */
+    public static final String TRANSPORT_PROPERTY = "booking.transport";
+    private static MessageTransport transport;
+
+    /**
+     * Returns the transport of the process. It is created on first use based on {@link #TRANSPORT_PROPERTY}.
+     */
+    public static synchronized MessageTransport getTransport() {
+        if (transport == null) {
+            String type = System.getProperty(TRANSPORT_PROPERTY, "rabbitmq");
+            transport = "inmemory".equalsIgnoreCase(type) ? new InMemoryTransport() : new RabbitMQTransport();
+        }
+        return transport;
+    }
+
+    /**
+     * Replaces the transport of the process. Has to be called before any component starts sending or listening.
+     *
+     * @param messageTransport The transport to use.
+     */
+    public static synchronized void setTransport(MessageTransport messageTransport) {
+        transport = messageTransport;
+    }
+}
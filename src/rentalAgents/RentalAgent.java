@@ -4,27 +4,85 @@ import props.*;
 import rabbitMQ.*;
 import buildings.*;
 import reservations.Reservation;
+import reservations.ReservationIds;
 import reservations.ReservationManager;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Handles the requests of clients. Every request is answered with exactly one reply, sent to the reply-to address of
+ * the request with its correlation ID. Reservations and cancellations are passed on to the building as requests of
+ * their own, and the client is answered once the building replied, or after {@code booking.agent.buildingTimeoutMillis}
+ * (default 5000) milliseconds without an answer of the building.
+ * <p>
+ * An agent either takes all requests from RENTAL_AGENT_QUEUE, or is one shard behind a {@link RentalAgentRouter} and
+ * takes the requests for its buildings from a queue of its own. The replies of buildings go to the queue the agent
+ * takes its requests from.
+ */
 public class RentalAgent {
+    private static final long BUILDING_TIMEOUT_MILLIS = Long.getLong("booking.agent.buildingTimeoutMillis", 5000);
+    private static final String NOT_BOOKED_WITH_BATCH = "Not booked because another room of the batch is not available.";
+    private static final String NOT_CANCELLED_WITH_BATCH = "Not cancelled because another reservation of the batch cannot be cancelled.";
 
     private Receiver receiver;
     private Sender sender;
+    private final PendingReplies buildingReplies;
+    private final String shardId;
+    private final String queueName;
+    private final String routingKey;
 
+    /**
+     * Creates an agent taking all requests from RENTAL_AGENT_QUEUE.
+     */
     public RentalAgent() {
+        this(null, RoutingConfig.RENTAL_AGENT_QUEUE.getValue(), RoutingConfig.RENTAL_AGENT_KEY.getValue());
+    }
+
+    /**
+     * Creates an agent that is one shard behind a {@link RentalAgentRouter}.
+     *
+     * @param shardId The ID of the shard, unique among the shards of the router.
+     */
+    public RentalAgent(String shardId) {
+        this(shardId, shardQueueOf(shardId), shardQueueOf(shardId));
+    }
+
+    private RentalAgent(String shardId, String queueName, String routingKey) {
         this.receiver = new Receiver();
         this.sender = new Sender();
+        this.shardId = shardId;
+        this.queueName = queueName;
+        this.routingKey = routingKey;
+        this.buildingReplies = new PendingReplies(routingKey, BUILDING_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @return The queue of a shard, whose name is also its routing key.
+     */
+    static String shardQueueOf(String shardId) {
+        return RoutingConfig.RENTAL_AGENT_SHARD_QUEUE.getValue() + "." + shardId;
+    }
+
+    /**
+     * @return The ID of the shard, or null if the agent takes all requests.
+     */
+    public String getShardId() {
+        return shardId;
     }
 
     /**
-     * Begins listening for responses in RENTAL_AGENT_QUEUE
+     * Begins listening for requests and the replies of buildings in the queue of this agent.
      */
     public void startListening() {
         try {
-            receiver.receiveDirectMessage(RoutingConfig.RENTAL_AGENT_QUEUE.getValue(), RoutingConfig.RENTAL_AGENT_KEY.getValue(), this::handleReceivedMessage);
+            // The reservation and building registries are thread-safe, so requests for different buildings run in parallel
+            ConsumerOptions options = ConsumerOptions.forQueue(queueName, Runtime.getRuntime().availableProcessors())
+                    .withOrderingKey(RentalAgent::buildingOf);
+            receiver.receiveDirectMessage(queueName, routingKey, this::handleReceivedMessage, options);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -38,7 +96,13 @@ public class RentalAgent {
     private void handleReceivedMessage(Message message) {
         switch (message.getType()) {
             case MessageType.REQUEST_BUILDINGS:
-                handleRequestBuildings();
+                handleRequestBuildings(message);
+                break;
+            case MessageType.SUBSCRIBE_AVAILABILITY:
+                handleSubscribeAvailability(message);
+                break;
+            case MessageType.QUERY_AVAILABILITY:
+                handleQueryAvailability(message);
                 break;
             case MessageType.MAKE_RESERVATION:
                 handleMakeReservation(message);
@@ -48,18 +112,51 @@ public class RentalAgent {
                     MessageType.RESERVATION_CANCELLED,
                     MessageType.ROOM_NOT_BOOKED,
                     MessageType.ROOM_NOT_FOUND,
-                    MessageType.ALREADY_BOOKED:
-                passTheMessageFromBuildingToClient(message);
+                    MessageType.ALREADY_BOOKED,
+                    MessageType.RESERVATION_FAILED,
+                    MessageType.BATCH_RESULT:
+                // Replies to requests that timed out were already answered, so they are dropped
+                buildingReplies.complete(message);
                 break;
             case MessageType.CANCEL_RESERVATION:
                 handleCancelReservation(message);
                 break;
+            case MessageType.MAKE_RESERVATION_BATCH:
+                handleMakeReservationBatch(message);
+                break;
+            case MessageType.CANCEL_RESERVATION_BATCH:
+                handleCancelReservationBatch(message);
+                break;
             default:
                 break;
         }
 
     }
 
+    /**
+     * Returns the building a request is about, so requests for the same building are handled in the order they arrived.
+     * Cancellations are mapped from the building ID in their reservation number, without looking the reservation up.
+     *
+     * @param message Message received from the listener.
+     * @return The building ID, or null if the message is not about a single known building. Malformed requests give
+     * null as well, since this runs on the thread dispatching the queue; their handler rejects them.
+     */
+    static Integer buildingOf(Message message) {
+        if (message.getType() == null || !(message.getPayload() instanceof ReservationRequest request)) {
+            return null;
+        }
+        switch (message.getType()) {
+            case MessageType.MAKE_RESERVATION:
+                Building building = BuildingManager.getBuildingByName(request.getBuildingName());
+                return building == null ? null : building.getBuildingID();
+            case MessageType.CANCEL_RESERVATION:
+                long number = ReservationIds.parse(request.getReservationNumber());
+                return number < 0 ? null : ReservationIds.buildingIdOf(number);
+            default:
+                return null;
+        }
+    }
+
     public void registerBuilding(int numberOfRooms){
         try {
             Message message = new Message(MessageType.CREATE_BUILDING, numberOfRooms);
@@ -70,28 +167,37 @@ public class RentalAgent {
     }
 
     /**
-     * Converts the List<Building> to List<String>
+     * Handles the request to provide a list of all available buildings by sending a response with the building names.
+     * The listing is a shared snapshot that is rebuilt only after rooms changed and encoded only once.
+     *
+     * @param message The request of the client.
      */
-    private List<String> convertBuildingsToStringList() {
-        return BuildingManager.getBuildings().stream().map(building -> {
-            String buildingInfo = "Building: " + building.getBuildingName();
-            String roomsInfo = building.getRooms().stream()
-                    .map(room -> "    " + room.getRoomName() + " - " + (room.isBooked() ? "Booked" : "Available"))
-                    .collect(Collectors.joining("\n"));
-            return buildingInfo + "\n" + roomsInfo;
-        }).collect(Collectors.toList());
+    private void handleRequestBuildings(Message message) {
+        reply(message, new Message(MessageType.RESPONSE_BUILDINGS, AvailabilitySnapshots.current()));
     }
 
     /**
-     * Handles the request to provide a list of all available buildings by sending a response with the building names.
+     * Handles the request of a subscriber for the state of all rooms, which it keeps up to date with the deltas on the
+     * availability fanout exchange.
+     *
+     * @param message The request of the client.
      */
-    private void handleRequestBuildings() {
-        List<String> buildingNames = convertBuildingsToStringList();
-        Message response = new Message(MessageType.RESPONSE_BUILDINGS, buildingNames);
+    private void handleSubscribeAvailability(Message message) {
+        reply(message, new Message(MessageType.AVAILABILITY_SNAPSHOT, AvailabilityPublisher.snapshot()));
+    }
+
+    /**
+     * Handles a query for the rooms of some buildings by replying with one page of matching rooms. The client asks for
+     * the next page with the cursor of this one, so only one page of a query is held at a time.
+     *
+     * @param message The request of the client.
+     */
+    private void handleQueryAvailability(Message message) {
         try {
-            sender.sendDirectMessage(RoutingConfig.CLIENT_QUEUE.getValue(), RoutingConfig.CLIENT_KEY.getValue(), response);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            reply(message, new Message(MessageType.AVAILABILITY_PAGE,
+                    AvailabilityQueries.page((AvailabilityQuery) message.getPayload())));
+        } catch (IllegalArgumentException e) {
+            reply(message, new Message(MessageType.INVALID_QUERY, e.getMessage()));
         }
     }
 
@@ -101,55 +207,103 @@ public class RentalAgent {
      * @param message The message containing reservation details.
      */
     private void handleMakeReservation(Message message) {
-        Reservation reservation = createReservationFromMessage(message);
-        Building building = BuildingManager.getBuildingByName(reservation.getBuildingName());
+        if (!(message.getPayload() instanceof ReservationRequest request)) {
+            sendInvalidRequestMessage(message);
+            return;
+        }
+        Building building = BuildingManager.getBuildingByName(request.getBuildingName());
 
         if (building == null) {
-            sendBuildingNotFoundMessage(reservation.getBuildingName());
+            sendBuildingNotFoundMessage(message, request.getBuildingName());
+            return;
+        }
+        ConferenceRoom room = building.getRoom(request.getRoomName());
+        if (room == null) {
+            sendRoomNotFoundMessage(message, request.getRoomName());
+        } else if (request.getStartTime() < 0 || request.getStartTime() >= request.getEndTime()) {
+            sendInvalidTimeSlotMessage(message, request);
         } else {
-            handleBuildingReservation(building, reservation);
+            Reservation reservation;
+            try {
+                reservation = createReservation(request, building, room);
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+                reply(message, new Message(MessageType.RESERVATION_FAILED, "The reservation for "
+                        + building.getBuildingName() + " " + room.getRoomName() + " could not be created."));
+                return;
+            }
+            handleBuildingReservation(message, building, reservation);
         }
     }
 
     /**
-     * Manages the reservation, creating reservations and notifying buildings.
+     * Manages the created reservation, asking its building to book the room.
+     * The client gets its reservation number once the building confirmed the booking. If the building refuses it,
+     * the reservation is cancelled again and the client gets the reply of the building. If the building does not
+     * answer in time, the reservation is cancelled, the building is asked to release the room in case it booked it
+     * after all, and the client is told that the reservation failed.
      *
+     * @param message      The request of the client.
      * @param building     The building where the reservation is to be made.
      * @param reservation  The reservation details.
      */
-    private void handleBuildingReservation(Building building, Reservation reservation) {
-        try {
-            ReservationManager.createReservations(reservation);
-            sendBuildingReservationRequest(building, reservation);
-            sendClientReservationNumber(reservation);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    private void handleBuildingReservation(Message message, Building building, Reservation reservation) {
+        ReservationRequest request = toRequest(reservation);
+        sendBuildingRequest(building, new Message(MessageType.MAKE_RESERVATION, request)).whenCompleteAsync((buildingReply, error) -> {
+            if (error == null && buildingReply.getType() == MessageType.CONFIRM_RESERVATION) {
+                reply(message, new Message(MessageType.RESERVATION_NUMBER, reservation.getReservationNumber()));
+            } else if (error == null) {
+                ReservationManager.cancelReservation(reservation);
+                reply(message, new Message(buildingReply.getType(), buildingReply.getPayload()));
+            } else {
+                error.printStackTrace();
+                ReservationManager.cancelReservation(reservation);
+                sendBuildingMessage(building, new Message(MessageType.CANCEL_RESERVATION, request));
+                sendReservationFailedMessage(message, request.getBuildingName(), request.getRoomName());
+            }
+        });
+    }
+
+    /**
+     * Sends a request to a specific building.
+     *
+     * @param building The building to which the request is sent.
+     * @param request  The request to be sent.
+     * @return A future completed with the reply of the building.
+     */
+    private CompletableFuture<Message> sendBuildingRequest(Building building, Message request) {
+        // Buildings share the queues of their partition; the header tells the BuildingManager which building it is for
+        int partition = BuildingQueues.partitionOf(building.getBuildingID());
+        return sender.sendRequest(BuildingQueues.queueOf(partition), BuildingQueues.keyOf(partition),
+                BuildingQueues.address(request, building.getBuildingID()), buildingReplies);
     }
 
     /**
-     * Sends a reservation request to a specific building's queue.
+     * Sends a message to a specific building without waiting for a reply.
      *
-     * @param building     The building to which the reservation request is sent.
-     * @param reservation  The reservation details to be sent.
-     * @throws Exception if there is a failure in message sending.
+     * @param building The building to which the message is sent.
+     * @param message  The message to be sent.
      */
-    private void sendBuildingReservationRequest(Building building, Reservation reservation) throws Exception {
-        Message buildingRequest = new Message(MessageType.MAKE_RESERVATION, reservation.getRoomName());
-        String buildingQueueName = RoutingConfig.BUILDING_QUEUE.getValue() + building.getBuildingID();
-        String buildingKey = RoutingConfig.BUILDING_KEY.getValue() + building.getBuildingID();
-        sender.sendDirectMessage(buildingQueueName, buildingKey, buildingRequest);
+    private void sendBuildingMessage(Building building, Message message) {
+        try {
+            int partition = BuildingQueues.partitionOf(building.getBuildingID());
+            sender.sendDirectMessage(BuildingQueues.queueOf(partition), BuildingQueues.keyOf(partition),
+                    BuildingQueues.address(message, building.getBuildingID()));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Sends the client their reservation number after making a reservation.
+     * Sends a message to the client indicating that the building did not answer the reservation request.
      *
-     * @param reservation The reservation which has been made.
-     * @throws Exception if there is a failure in message sending.
+     * @param message      The request of the client.
+     * @param buildingName The building of the reservation which has been cancelled.
+     * @param roomName     The room of the reservation which has been cancelled.
      */
-    private void sendClientReservationNumber(Reservation reservation) throws Exception {
-        sender.sendDirectMessage(RoutingConfig.CLIENT_QUEUE.getValue(), RoutingConfig.CLIENT_KEY.getValue(),
-                new Message(MessageType.RESERVATION_NUMBER, reservation.getReservationNumber()));
+    private void sendReservationFailedMessage(Message message, String buildingName, String roomName) {
+        reply(message, new Message(MessageType.RESERVATION_FAILED, "The reservation for " + buildingName + " "
+                + roomName + " could not be confirmed by the building. Please try again."));
     }
 
     /**
@@ -158,21 +312,27 @@ public class RentalAgent {
      * @param message The message containing the reservation number to cancel.
      */
     private void handleCancelReservation(Message message) {
+        if (!(message.getPayload() instanceof ReservationRequest)) {
+            sendInvalidRequestMessage(message);
+            return;
+        }
         try {
-            String reservationNumber = (String) message.getPayload();
+            String reservationNumber = ((ReservationRequest) message.getPayload()).getReservationNumber();
             Reservation reservation = ReservationManager.getReservationByNumber(reservationNumber);
+            ReservationRequest request = reservation == null ? null : toRequest(reservation);
 
-            if (reservation == null) {
-                // Handle case where the reservation was not found
-                 sendReservationNotFoundMessage(reservationNumber);
+            if (request == null || request.getBuildingName() == null) {
+                // Handle case where the reservation was not found or cancelled meanwhile
+                 sendReservationNotFoundMessage(message, reservationNumber);
             } else {
-                // If the building is found, proceed with cancellation
-                Building building = BuildingManager.getBuildingByName(reservation.getBuildingName());
+                // The building queue is found from the building ID in the reservation number
+                Building building = BuildingManager.getBuildingById(reservation.getBuildingId());
                 if (building == null){
-                    sendBuildingNotFoundMessage(reservation.getBuildingName());
+                    sendBuildingNotFoundMessage(message, request.getBuildingName());
+                } else if (ReservationManager.cancelReservation(reservation)) {
+                    handleBuildingCancellation(message, building, request);
                 } else {
-                    sendBuildingCancelRequest(building, reservation);
-                    ReservationManager.cancelReservation(reservation);
+                    sendReservationNotFoundMessage(message, reservationNumber);
                 }
             }
         } catch (Exception e) {
@@ -182,70 +342,352 @@ public class RentalAgent {
 
 
     /**
-     * Sends a cancellation request to the specific building's queue for a reservation.
+     * Asks the building to release the room of a cancelled reservation and passes its reply on to the client.
      *
+     * @param message      The request of the client.
      * @param building     The building where the cancellation request needs to be sent.
-     * @param reservation  The reservation that is to be cancelled.
-     * @throws Exception if there is a failure in message sending.
+     * @param request      The request describing the reservation that is cancelled.
      */
-    private void sendBuildingCancelRequest(Building building, Reservation reservation) throws Exception {
-        Message buildingRequest = new Message(MessageType.CANCEL_RESERVATION, reservation.getRoomName());
-        String buildingQueueName = RoutingConfig.BUILDING_QUEUE.getValue() + building.getBuildingID();
-        String buildingKey = RoutingConfig.BUILDING_KEY.getValue() + building.getBuildingID();
-        sender.sendDirectMessage(buildingQueueName, buildingKey, buildingRequest);
+    private void handleBuildingCancellation(Message message, Building building, ReservationRequest request) {
+        sendBuildingRequest(building, new Message(MessageType.CANCEL_RESERVATION, request)).whenCompleteAsync((buildingReply, error) -> {
+            if (error == null) {
+                reply(message, new Message(buildingReply.getType(), buildingReply.getPayload()));
+            } else {
+                error.printStackTrace();
+                reply(message, new Message(MessageType.RESERVATION_FAILED, "The reservation " + request.getReservationNumber()
+                        + " is cancelled, but " + request.getBuildingName() + " did not confirm releasing the room yet."));
+            }
+        });
     }
 
     /**
-     * Creates a Reservation object from the provided message payload.
+     * Handles a batch of reservations. Each building gets one request with the reservations of its rooms, and the
+     * client gets one reply with the result of every reservation in the order of the batch. Reservations the building
+     * refused or did not answer are cancelled again. In all-or-nothing mode nothing is booked if a building or room of
+     * the batch does not exist, and the reservations made are cancelled and their rooms released again if any
+     * reservation of the batch failed.
      *
-     * @param message The message containing reservation details.
+     * @param message The batch of the client.
+     */
+    private void handleMakeReservationBatch(Message message) {
+        if (!(message.getPayload() instanceof ReservationBatch batch)) {
+            sendInvalidRequestMessage(message);
+            return;
+        }
+        List<ReservationRequest> requests = batch.getRequests() == null ? List.of() : batch.getRequests();
+        ReservationResult[] results = new ReservationResult[requests.size()];
+        Map<Building, List<Integer>> itemsByBuilding = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReservationRequest request = requests.get(i);
+            Building building = BuildingManager.getBuildingByName(request.getBuildingName());
+            ConferenceRoom room = building == null ? null : building.getRoom(request.getRoomName());
+            if (building == null) {
+                results[i] = new ReservationResult(request, MessageType.BUILDING_NOT_FOUND,
+                        "The building " + request.getBuildingName() + " does not exist.");
+            } else if (room == null) {
+                results[i] = new ReservationResult(request, MessageType.ROOM_NOT_FOUND,
+                        "The room " + request.getRoomName() + " does not exist!");
+            } else if (request.getStartTime() < 0 || request.getStartTime() >= request.getEndTime()) {
+                results[i] = new ReservationResult(request, MessageType.RESERVATION_FAILED, "The time slot from "
+                        + request.getStartTime() + " to " + request.getEndTime() + " is not valid.");
+            } else if (!ReservationIds.fits(building.getBuildingID())) {
+                // Checked here rather than caught later, so an all-or-nothing batch fails before anything is reserved
+                results[i] = new ReservationResult(request, MessageType.RESERVATION_FAILED,
+                        "The reservation for " + building.getBuildingName() + " could not be created.");
+            } else {
+                itemsByBuilding.computeIfAbsent(building, b -> new ArrayList<>()).add(i);
+            }
+        }
+        if (batch.isAllOrNothing() && countItems(itemsByBuilding) < requests.size()) {
+            replyWithBatchResult(message, requests, results, NOT_BOOKED_WITH_BATCH);
+            return;
+        }
+
+        Reservation[] reservations = new Reservation[requests.size()];
+        ReservationRequest[] buildingRequests = new ReservationRequest[requests.size()];
+        for (Map.Entry<Building, List<Integer>> entry : itemsByBuilding.entrySet()) {
+            Building building = entry.getKey();
+            for (int i : entry.getValue()) {
+                ReservationRequest request = requests.get(i);
+                reservations[i] = ReservationManager.createReservation(batch.getUsername(), building.getBuildingID(),
+                        building.getBuildingName(), building.getRoom(request.getRoomName()).getRoomName(),
+                        request.getStartTime(), request.getEndTime());
+                buildingRequests[i] = toRequest(reservations[i]);
+            }
+        }
+        sendBatchToBuildings(MessageType.MAKE_RESERVATION_BATCH, batch, itemsByBuilding, buildingRequests, results)
+                .whenCompleteAsync((done, error) -> {
+                    boolean rollBack = batch.isAllOrNothing() && !allSuccessful(results);
+                    Map<Building, List<Integer>> toRelease = new LinkedHashMap<>();
+                    for (Map.Entry<Building, List<Integer>> entry : itemsByBuilding.entrySet()) {
+                        for (int i : entry.getValue()) {
+                            boolean confirmed = results[i].getStatus() == MessageType.CONFIRM_RESERVATION;
+                            if (confirmed && !rollBack) {
+                                results[i] = new ReservationResult(buildingRequests[i], MessageType.RESERVATION_NUMBER,
+                                        reservations[i].getReservationNumber());
+                                continue;
+                            }
+                            ReservationManager.cancelReservation(reservations[i]);
+                            if (confirmed) {
+                                toRelease.computeIfAbsent(entry.getKey(), b -> new ArrayList<>()).add(i);
+                                results[i] = new ReservationResult(buildingRequests[i], MessageType.RESERVATION_FAILED,
+                                        NOT_BOOKED_WITH_BATCH);
+                            }
+                        }
+                    }
+                    toRelease.forEach((building, items) -> sendBuildingMessage(building,
+                            new Message(MessageType.CANCEL_RESERVATION_BATCH, subBatch(batch, items, buildingRequests))));
+                    replyWithBatchResult(message, requests, results, null);
+                });
+    }
+
+    /**
+     * Handles a batch of cancellations. Each building gets one request with the cancellations of its rooms, and the
+     * client gets one reply with the result of every cancellation in the order of the batch. In all-or-nothing mode
+     * nothing is cancelled unless every reservation of the batch exists. If another request cancels one of them while
+     * the batch is cancelling, the reservations the batch already cancelled are reinstated under their numbers before
+     * any building is asked to release a room.
+     *
+     * @param message The batch of the client.
+     */
+    private void handleCancelReservationBatch(Message message) {
+        if (!(message.getPayload() instanceof ReservationBatch batch)) {
+            sendInvalidRequestMessage(message);
+            return;
+        }
+        List<ReservationRequest> requests = batch.getRequests() == null ? List.of() : batch.getRequests();
+        ReservationResult[] results = new ReservationResult[requests.size()];
+        Reservation[] reservations = new Reservation[requests.size()];
+        ReservationRequest[] buildingRequests = new ReservationRequest[requests.size()];
+        Map<Building, List<Integer>> itemsByBuilding = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String reservationNumber = requests.get(i).getReservationNumber();
+            Reservation reservation = ReservationManager.getReservationByNumber(reservationNumber);
+            ReservationRequest request = reservation == null ? null : toRequest(reservation);
+            Building building = reservation == null ? null : BuildingManager.getBuildingById(reservation.getBuildingId());
+            if (request == null || request.getBuildingName() == null) {
+                results[i] = new ReservationResult(requests.get(i), MessageType.RESERVATION_CANT_FOUND,
+                        reservationNumber + " numbered reservation cant be found in the system.");
+            } else if (building == null) {
+                results[i] = new ReservationResult(request, MessageType.BUILDING_NOT_FOUND,
+                        "The building " + request.getBuildingName() + " does not exist.");
+            } else {
+                reservations[i] = reservation;
+                buildingRequests[i] = request;
+                itemsByBuilding.computeIfAbsent(building, b -> new ArrayList<>()).add(i);
+            }
+        }
+        if (batch.isAllOrNothing() && countItems(itemsByBuilding) < requests.size()) {
+            replyWithBatchResult(message, requests, results, NOT_CANCELLED_WITH_BATCH);
+            return;
+        }
+        for (List<Integer> items : itemsByBuilding.values()) {
+            // A reservation cancelled meanwhile by another request is reported as not found
+            items.removeIf(i -> {
+                if (ReservationManager.cancelReservation(reservations[i])) {
+                    return false;
+                }
+                results[i] = new ReservationResult(buildingRequests[i], MessageType.RESERVATION_CANT_FOUND,
+                        buildingRequests[i].getReservationNumber() + " numbered reservation cant be found in the system.");
+                return true;
+            });
+        }
+        if (batch.isAllOrNothing() && countItems(itemsByBuilding) < requests.size()) {
+            for (List<Integer> items : itemsByBuilding.values()) {
+                for (int i : items) {
+                    ReservationRequest request = buildingRequests[i];
+                    ReservationManager.reinstateReservation(request.getReservationNumber(), request.getUsername(),
+                            request.getBuildingName(), request.getRoomName(), request.getStartTime(), request.getEndTime());
+                }
+            }
+            replyWithBatchResult(message, requests, results, NOT_CANCELLED_WITH_BATCH);
+            return;
+        }
+        itemsByBuilding.values().removeIf(List::isEmpty);
+        sendBatchToBuildings(MessageType.CANCEL_RESERVATION_BATCH, batch, itemsByBuilding, buildingRequests, results)
+                .whenCompleteAsync((done, error) -> replyWithBatchResult(message, requests, results, null));
+    }
+
+    /**
+     * Sends every building one batch with its part of the reservations and fills in the results the buildings reply
+     * with. A building that does not answer in time gets its reservations released, and their results are failures.
+     *
+     * @param type             MAKE_RESERVATION_BATCH or CANCEL_RESERVATION_BATCH.
+     * @param batch            The batch of the client.
+     * @param itemsByBuilding  The indexes of the reservations of the batch, grouped by building.
+     * @param buildingRequests The complete requests sent to the buildings, by index.
+     * @param results          The results by index, filled in as the buildings reply.
+     * @return A future completed when every building replied or timed out.
+     */
+    private CompletableFuture<Void> sendBatchToBuildings(MessageType type, ReservationBatch batch,
+                                                         Map<Building, List<Integer>> itemsByBuilding,
+                                                         ReservationRequest[] buildingRequests, ReservationResult[] results) {
+        List<CompletableFuture<Void>> replies = new ArrayList<>(itemsByBuilding.size());
+        for (Map.Entry<Building, List<Integer>> entry : itemsByBuilding.entrySet()) {
+            Building building = entry.getKey();
+            List<Integer> items = entry.getValue();
+            ReservationBatch buildingBatch = subBatch(batch, items, buildingRequests);
+            replies.add(sendBuildingRequest(building, new Message(type, buildingBatch)).handle((buildingReply, error) -> {
+                List<ReservationResult> buildingResults = error == null
+                        ? ((ReservationBatchResult) buildingReply.getPayload()).getResults() : null;
+                if (buildingResults == null || buildingResults.size() != items.size()) {
+                    if (error != null) {
+                        error.printStackTrace();
+                    }
+                    if (type == MessageType.MAKE_RESERVATION_BATCH) {
+                        // The building may still book the rooms after the timeout
+                        sendBuildingMessage(building, new Message(MessageType.CANCEL_RESERVATION_BATCH, buildingBatch));
+                    }
+                    for (int i : items) {
+                        results[i] = new ReservationResult(buildingRequests[i], MessageType.RESERVATION_FAILED,
+                                building.getBuildingName() + " did not confirm the request. Please try again.");
+                    }
+                } else {
+                    for (int k = 0; k < items.size(); k++) {
+                        results[items.get(k)] = buildingResults.get(k);
+                    }
+                }
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * @return The batch of the client reduced to the reservations with the given indexes.
+     */
+    private ReservationBatch subBatch(ReservationBatch batch, List<Integer> items, ReservationRequest[] buildingRequests) {
+        List<ReservationRequest> requests = new ArrayList<>(items.size());
+        for (int i : items) {
+            requests.add(buildingRequests[i]);
+        }
+        return new ReservationBatch(batch.getUsername(), batch.isAllOrNothing(), requests);
+    }
+
+    /**
+     * Replies to a batch of the client with the results of its reservations.
+     *
+     * @param message     The batch of the client.
+     * @param requests    The reservations of the batch.
+     * @param results     The results by index.
+     * @param missingText Detail of the reservations without a result, which were not tried, or null if all have one.
+     */
+    private void replyWithBatchResult(Message message, List<ReservationRequest> requests, ReservationResult[] results,
+                                      String missingText) {
+        List<ReservationResult> batchResults = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            batchResults.add(results[i] != null ? results[i]
+                    : new ReservationResult(requests.get(i), MessageType.RESERVATION_FAILED, missingText));
+        }
+        reply(message, new Message(MessageType.BATCH_RESULT, new ReservationBatchResult(batchResults)));
+    }
+
+    private static int countItems(Map<Building, List<Integer>> itemsByBuilding) {
+        int count = 0;
+        for (List<Integer> items : itemsByBuilding.values()) {
+            count += items.size();
+        }
+        return count;
+    }
+
+    private static boolean allSuccessful(ReservationResult[] results) {
+        for (ReservationResult result : results) {
+            if (result == null || !result.isSuccessful()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates and confirms the reservation for the requested room. The names are taken from the building and room,
+     * so the reservation is stored under their canonical names.
+     *
+     * @param request  The request of the client.
+     * @param building The building the room belongs to.
+     * @param room     The room to be reserved.
      * @return The created Reservation object.
      */
-    private Reservation createReservationFromMessage(Message message) {
-        String payload = (String) message.getPayload();
-        String[] parts = payload.split(",", 3);
-        return new Reservation(parts[0], parts[1], parts[2]);
+    private Reservation createReservation(ReservationRequest request, Building building, ConferenceRoom room) {
+        return ReservationManager.createReservation(request.getUsername(), building.getBuildingID(),
+                building.getBuildingName(), room.getRoomName(), request.getStartTime(), request.getEndTime());
+    }
+
+    /**
+     * Creates the request sent to a building for the given reservation.
+     *
+     * @param reservation The reservation to be made or cancelled.
+     * @return The request describing the reservation.
+     */
+    private ReservationRequest toRequest(Reservation reservation) {
+        return new ReservationRequest(reservation.getUsername(), reservation.getBuildingName(),
+                reservation.getRoomName(), reservation.getReservationNumber(),
+                reservation.getStartTime(), reservation.getEndTime());
+    }
+
+    /**
+     * Sends a message to the client indicating that its request has no reservation or batch in its payload.
+     *
+     * @param message The request of the client.
+     */
+    private void sendInvalidRequestMessage(Message message) {
+        reply(message, new Message(MessageType.RESERVATION_FAILED, "The " + message.getType()
+                + " request does not describe a reservation."));
     }
 
     /**
      * Sends a message to the client indicating that the specified building was not found.
      *
+     * @param message      The request of the client.
      * @param buildingName The name of the building that was not found.
      */
-    private void sendBuildingNotFoundMessage(String buildingName) {
-        try {
-            Message message = new Message(MessageType.BUILDING_NOT_FOUND, "The building " + buildingName + " does not exist.");
-            sender.sendDirectMessage(RoutingConfig.CLIENT_QUEUE.getValue(), RoutingConfig.CLIENT_KEY.getValue(), message);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    private void sendBuildingNotFoundMessage(Message message, String buildingName) {
+        reply(message, new Message(MessageType.BUILDING_NOT_FOUND, "The building " + buildingName + " does not exist."));
     }
 
     /**
-     * Forwards messages received from the building to the client.
+     * Sends a message to the client indicating that the specified room was not found.
      *
-     * @param message The message to be forwarded to the client.
+     * @param message  The request of the client.
+     * @param roomName The name of the room that was not found.
      */
-    private void passTheMessageFromBuildingToClient(Message message) {
-        try {
-            sender.sendDirectMessage(RoutingConfig.CLIENT_QUEUE.getValue(), RoutingConfig.CLIENT_KEY.getValue(), message);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    private void sendRoomNotFoundMessage(Message message, String roomName) {
+        reply(message, new Message(MessageType.ROOM_NOT_FOUND, "The room " + roomName + " does not exist!"));
+    }
+
+    /**
+     * Sends a message to the client indicating that the requested time slot is not valid.
+     *
+     * @param message The request of the client.
+     * @param request The request with the invalid time slot.
+     */
+    private void sendInvalidTimeSlotMessage(Message message, ReservationRequest request) {
+        reply(message, new Message(MessageType.RESERVATION_FAILED, "The time slot from " + request.getStartTime()
+                + " to " + request.getEndTime() + " is not valid. The start has to be before the end."));
     }
 
     /**
      * Sends a message to the client indicating that the reservation with the specified number was not found.
      *
+     * @param message           The request of the client.
      * @param reservationNumber The reservation number that was not found.
      */
-    private void sendReservationNotFoundMessage(String reservationNumber) {
-        try {
-            Message message = new Message(MessageType.RESERVATION_CANT_FOUND, reservationNumber + " numbered reservation cant be found in the system.");
-            sender.sendDirectMessage(RoutingConfig.CLIENT_QUEUE.getValue(), RoutingConfig.CLIENT_KEY.getValue(), message);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    private void sendReservationNotFoundMessage(Message message, String reservationNumber) {
+        reply(message, new Message(MessageType.RESERVATION_CANT_FOUND, reservationNumber + " numbered reservation cant be found in the system."));
+    }
+
+    /**
+     * Sends the reply to a request of the client to the reply-to address of the request.
+     *
+     * @param request The request of the client.
+     * @param reply   The reply to be sent.
+     */
+    private void reply(Message request, Message reply) {
+        sender.sendReply(request, reply).whenComplete((sent, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+        });
     }
 
 }
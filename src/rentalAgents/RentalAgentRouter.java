@@ -0,0 +1,130 @@
+package rentalAgents;
+
+import props.Message;
+import props.MessageType;
+import props.ReservationBatch;
+import props.ReservationRequest;
+import rabbitMQ.ConsumerOptions;
+import rabbitMQ.Receiver;
+import rabbitMQ.RoutingConfig;
+import rabbitMQ.Sender;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes the requests of clients from RENTAL_AGENT_QUEUE and passes each one on to the {@link RentalAgent} shard owning
+ * its building, chosen by a {@link ShardRing}. Requests keep their correlation ID and reply-to address, so the shard
+ * replies to the client directly. Requests without a building, like the building list, go to the shards in turn, and
+ * a batch goes to the owner of its first building.
+ * <p>
+ * Adding or removing a shard moves the buildings the ring assigns differently. A removed shard still handles the
+ * requests already in its queue, and requests of a moved building that are in flight may be handled by both the old
+ * and the new owner for a moment; the buildings themselves decide conflicting reservations.
+ */
+public class RentalAgentRouter {
+    private final ShardRing ring = new ShardRing();
+    private final Sender sender = new Sender();
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    /**
+     * Begins passing on the requests in RENTAL_AGENT_QUEUE. Requests arriving before the first shard is added are
+     * answered with RESERVATION_FAILED.
+     */
+    public void startListening() {
+        try {
+            String queueName = RoutingConfig.RENTAL_AGENT_QUEUE.getValue();
+            // Passing on keeps the order of the requests of a building, like the agent itself does
+            ConsumerOptions options = ConsumerOptions.forQueue(queueName, Runtime.getRuntime().availableProcessors())
+                    .withOrderingKey(RentalAgentRouter::routingBuildingOf);
+            Receiver.receiveDirectMessage(queueName, RoutingConfig.RENTAL_AGENT_KEY.getValue(), this::route, options);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lets a shard take over its part of the buildings. The shard has to listen on its queue already.
+     *
+     * @param shard A RentalAgent created with a shard ID.
+     */
+    public void addShard(RentalAgent shard) {
+        if (shard.getShardId() == null) {
+            throw new IllegalArgumentException("The RentalAgent is not a shard");
+        }
+        ring.addShard(shard.getShardId());
+    }
+
+    /**
+     * Hands the buildings of a shard over to the remaining shards.
+     *
+     * @param shardId The ID of the shard to be removed.
+     */
+    public void removeShard(String shardId) {
+        ring.removeShard(shardId);
+    }
+
+    /**
+     * @return The ID of the shard owning the building, or null if there is no shard.
+     */
+    public String shardFor(int buildingId) {
+        return ring.shardFor(buildingId);
+    }
+
+    public List<String> getShards() {
+        return ring.getShards();
+    }
+
+    private void route(Message message) {
+        Integer buildingId = routingBuildingOf(message);
+        String shardId = buildingId != null ? ring.shardFor(buildingId) : anyShard();
+        if (shardId == null) {
+            System.err.println("No RentalAgent shard to handle " + message.getType());
+            sender.sendReply(message, new Message(MessageType.RESERVATION_FAILED,
+                    "No RentalAgent is available to handle the request. Please try again later."))
+                    .whenComplete((sent, error) -> {
+                        if (error != null) {
+                            error.printStackTrace();
+                        }
+                    });
+            return;
+        }
+        String shardQueue = RentalAgent.shardQueueOf(shardId);
+        try {
+            sender.sendDirectMessage(shardQueue, shardQueue, message).whenComplete((sent, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String anyShard() {
+        List<String> shards = ring.getShards();
+        return shards.isEmpty() ? null : shards.get(Math.floorMod(nextShard.getAndIncrement(), shards.size()));
+    }
+
+    /**
+     * Also orders the requests on the router's queue, so a malformed request gives null instead of throwing; the shard
+     * it is passed on to rejects it.
+     *
+     * @return The building that decides the shard of the request, or null if any shard can handle it.
+     */
+    private static Integer routingBuildingOf(Message message) {
+        if (message.getType() == MessageType.MAKE_RESERVATION_BATCH || message.getType() == MessageType.CANCEL_RESERVATION_BATCH) {
+            if (!(message.getPayload() instanceof ReservationBatch batch)) {
+                return null;
+            }
+            List<ReservationRequest> requests = batch.getRequests();
+            if (requests == null || requests.isEmpty() || requests.get(0) == null) {
+                return null;
+            }
+            MessageType itemType = message.getType() == MessageType.MAKE_RESERVATION_BATCH
+                    ? MessageType.MAKE_RESERVATION : MessageType.CANCEL_RESERVATION;
+            return RentalAgent.buildingOf(new Message(itemType, requests.get(0)));
+        }
+        return RentalAgent.buildingOf(message);
+    }
+}
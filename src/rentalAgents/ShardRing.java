@@ -0,0 +1,122 @@
+package rentalAgents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns buildings to RentalAgent shards by consistent hashing. Every shard is placed on a ring of 32-bit hashes at
+ * several points, and a building belongs to the shard at the first point at or after the hash of its ID. Adding a shard
+ * only moves the buildings that now fall before one of its points, and removing one only moves its own buildings, so
+ * a change of the shards moves about {@code 1 / shards} of the buildings.
+ * <p>
+ * The ring is replaced as a whole on every change, so lookups never lock and always see a complete ring.
+ */
+public class ShardRing {
+    public static final int DEFAULT_POINTS_PER_SHARD = 128;
+
+    private final int pointsPerShard;
+    private volatile Ring ring = new Ring(new int[0], new String[0]);
+
+    public ShardRing() {
+        this(DEFAULT_POINTS_PER_SHARD);
+    }
+
+    /**
+     * @param pointsPerShard How often each shard is placed on the ring. More points spread the buildings more evenly.
+     */
+    public ShardRing(int pointsPerShard) {
+        if (pointsPerShard < 1) {
+            throw new IllegalArgumentException("Points per shard must be positive: " + pointsPerShard);
+        }
+        this.pointsPerShard = pointsPerShard;
+    }
+
+    /**
+     * Places a shard on the ring. Does nothing if it already is.
+     */
+    public synchronized void addShard(String shardId) {
+        List<String> shards = getShards();
+        if (!shards.contains(shardId)) {
+            shards.add(shardId);
+            ring = build(shards);
+        }
+    }
+
+    /**
+     * Removes a shard from the ring; its buildings move to the shards that follow its points.
+     */
+    public synchronized void removeShard(String shardId) {
+        List<String> shards = getShards();
+        if (shards.remove(shardId)) {
+            ring = build(shards);
+        }
+    }
+
+    /**
+     * @return The shard owning the building, or null if there is no shard.
+     */
+    public String shardFor(int buildingId) {
+        Ring current = ring;
+        if (current.owners.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(current.points, mix(buildingId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return current.owners[index == current.points.length ? 0 : index];
+    }
+
+    /**
+     * @return The shards on the ring, in the order they were added.
+     */
+    public List<String> getShards() {
+        return new ArrayList<>(ring.shards);
+    }
+
+    private Ring build(List<String> shards) {
+        int count = shards.size() * pointsPerShard;
+        long[] entries = new long[count];
+        int i = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int shardHash = shards.get(shard).hashCode();
+            for (int point = 0; point < pointsPerShard; point++) {
+                // The hash goes to the high half so entries sort by it; ties are broken by the shard's position
+                long hash = mix(((long) shardHash << 32) | point);
+                entries[i++] = (hash << 32) | shard;
+            }
+        }
+        Arrays.sort(entries);
+        int[] points = new int[count];
+        String[] owners = new String[count];
+        for (i = 0; i < count; i++) {
+            points[i] = (int) (entries[i] >> 32);
+            owners[i] = shards.get((int) entries[i]);
+        }
+        Ring result = new Ring(points, owners);
+        result.shards.addAll(shards);
+        return result;
+    }
+
+    /**
+     * Spreads consecutive IDs evenly over the ring.
+     */
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    private static final class Ring {
+        private final int[] points;
+        private final String[] owners;
+        private final List<String> shards = new ArrayList<>();
+
+        private Ring(int[] points, String[] owners) {
+            this.points = points;
+            this.owners = owners;
+        }
+    }
+}
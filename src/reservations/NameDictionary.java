@@ -0,0 +1,74 @@
+package reservations;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns small int IDs to names, so a name repeated across many reservations is stored once. IDs start at 1,
+ * 0 stands for no name. Looking up an ID is a plain array read; new names are added under the dictionary's lock.
+ */
+class NameDictionary {
+    static final int NO_NAME = 0;
+
+    private final boolean ignoreCase;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private int size = 1;
+
+    /**
+     * @param ignoreCase Whether names differing only in case share an ID. The first form that was added is kept.
+     */
+    NameDictionary(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    /**
+     * @return The ID of the name, adding it if it is not known yet.
+     */
+    int idOf(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        Integer id = ids.get(key(name));
+        return id != null ? id : add(name);
+    }
+
+    /**
+     * @return The ID of the name, or {@link #NO_NAME} if it is not known.
+     */
+    int find(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        Integer id = ids.get(key(name));
+        return id == null ? NO_NAME : id;
+    }
+
+    String nameOf(int id) {
+        return id == NO_NAME ? null : names[id];
+    }
+
+    private synchronized int add(String name) {
+        String key = key(name);
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size++;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = name;
+        // The name is published by the volatile write before its ID can be found
+        names = current;
+        ids.put(key, id);
+        return id;
+    }
+
+    private String key(String name) {
+        return ignoreCase ? name.toLowerCase(Locale.ROOT) : name;
+    }
+}
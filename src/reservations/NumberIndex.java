@@ -0,0 +1,147 @@
+package reservations;
+
+import java.util.Arrays;
+
+/**
+ * Maps 64-bit reservation numbers to their slot in the {@link ReservationStore}. The table is split into stripes
+ * by the hash of the number; each stripe is an open-addressing table of primitive arrays guarded by its own lock,
+ * which callers also hold while they change the reservation, so all changes of one reservation are serialized.
+ */
+class NumberIndex {
+    private static final int NOT_FOUND = -1;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    NumberIndex(int stripeCount) {
+        int stripeBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(stripeCount - 1));
+        // Stripes are chosen by the high bits of the hash and positions within a stripe by the low bits
+        stripeShift = 32 - stripeBits;
+        stripes = new Stripe[1 << stripeBits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return The stripe owning the number. Callers synchronize on it to change the reservation atomically.
+     */
+    Stripe stripeOf(long number) {
+        return stripes[hash(number) >>> stripeShift];
+    }
+
+    static int hash(long number) {
+        long h = number * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    static final class Stripe {
+        private long[] numbers = new long[16];
+        private int[] slots = newSlots(16);
+        private int size;
+
+        /**
+         * @return The slot of the number, or -1 if it is not in the index.
+         */
+        synchronized int get(long number) {
+            int index = indexOf(number);
+            return index < 0 ? NOT_FOUND : slots[index];
+        }
+
+        /**
+         * Has to be called while holding the stripe's lock.
+         *
+         * @return The previous slot of the number, or -1 if it was not in the index.
+         */
+        int put(long number, int slot) {
+            int index = indexOf(number);
+            if (index >= 0) {
+                int previous = slots[index];
+                slots[index] = slot;
+                return previous;
+            }
+            if ((size + 1) * 4 > slots.length * 3) {
+                resize(slots.length * 2);
+            }
+            int mask = slots.length - 1;
+            index = hash(number) & mask;
+            while (slots[index] != NOT_FOUND) {
+                index = (index + 1) & mask;
+            }
+            numbers[index] = number;
+            slots[index] = slot;
+            size++;
+            return NOT_FOUND;
+        }
+
+        /**
+         * Has to be called while holding the stripe's lock.
+         *
+         * @return The slot the number had, or -1 if it was not in the index.
+         */
+        int remove(long number) {
+            int index = indexOf(number);
+            if (index < 0) {
+                return NOT_FOUND;
+            }
+            int removed = slots[index];
+            int mask = slots.length - 1;
+            int gap = index;
+            int next = (gap + 1) & mask;
+            while (slots[next] != NOT_FOUND) {
+                int home = hash(numbers[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    numbers[gap] = numbers[next];
+                    slots[gap] = slots[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            slots[gap] = NOT_FOUND;
+            size--;
+            return removed;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int indexOf(long number) {
+            int mask = slots.length - 1;
+            int index = hash(number) & mask;
+            while (slots[index] != NOT_FOUND) {
+                if (numbers[index] == number) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        private void resize(int capacity) {
+            long[] oldNumbers = numbers;
+            int[] oldSlots = slots;
+            numbers = new long[capacity];
+            slots = newSlots(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != NOT_FOUND) {
+                    int index = hash(oldNumbers[i]) & mask;
+                    while (slots[index] != NOT_FOUND) {
+                        index = (index + 1) & mask;
+                    }
+                    numbers[index] = oldNumbers[i];
+                    slots[index] = oldSlots[i];
+                }
+            }
+        }
+
+        private static int[] newSlots(int capacity) {
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, NOT_FOUND);
+            return slots;
+        }
+    }
+}
@@ -1,68 +1,107 @@
 package reservations;
 
-import java.util.*;
-
+import props.ReservationRequest;
+
+/**
+ * A view of a reservation kept in the {@link ReservationStore}. It holds only the slot and the number of the
+ * reservation and reads every other value from the store when asked, so views are cheap to create and the store stays
+ * the only copy of the data. Once the reservation is cancelled the view reports {@link ReservationStatus#CANCELLED},
+ * and its names are null and its times 0.
+ */
 public class Reservation {
-    private String reservationNumber;
-    private String buildingName;
-    private String username;
-    private String roomName;
-    private ReservationStatus status;
-
-    public Reservation() {
+    private final ReservationStore store;
+    private final int slot;
+    private final long number;
+
+    Reservation(ReservationStore store, int slot, long number) {
+        this.store = store;
+        this.slot = slot;
+        this.number = number;
     }
 
-    public Reservation(String username, String buildingName, String roomName) {
-        this.reservationNumber = UUID.randomUUID().toString();
-        this.buildingName = buildingName;
-        this.roomName = roomName;
-        this.status = ReservationStatus.PENDING;
-        this.username = username;
+    public String getReservationNumber() {
+        return ReservationIds.format(number);
     }
 
-    public String getReservationNumber() {
-        return reservationNumber;
+    /**
+     * @return The ID of the building of the reservation, read from its number.
+     */
+    public int getBuildingId() {
+        return ReservationIds.buildingIdOf(number);
     }
 
     public String getBuildingName() {
-        return buildingName;
+        int buildingId = store.buildingId(slot);
+        return isCurrent() ? store.buildings.nameOf(buildingId) : null;
     }
 
     public String getRoomName() {
-        return roomName;
+        int roomId = store.roomId(slot);
+        return isCurrent() ? store.rooms.nameOf(roomId) : null;
     }
 
-    public void setRoomName(String roomName) {
-        this.roomName = roomName;
+    public ReservationStatus getStatus() {
+        return isCurrent() ? ReservationStatus.CONFIRMED : ReservationStatus.CANCELLED;
     }
 
-    public ReservationStatus getStatus() {
-        return status;
+    public String getUsername() {
+        int userId = store.userId(slot);
+        return isCurrent() ? store.users.nameOf(userId) : null;
+    }
+
+    public long getStartTime() {
+        long startTime = store.startTime(slot);
+        return isCurrent() ? startTime : 0;
     }
 
-    public void setStatus(ReservationStatus status) {
-        this.status = status;
+    public long getEndTime() {
+        long endTime = store.endTime(slot);
+        return isCurrent() ? endTime : 0;
     }
 
+    /**
+     * @return true if the reservation has no time slot and keeps the room booked until it is cancelled.
+     */
+    public boolean isOpenEnded() {
+        return getStartTime() == ReservationRequest.OPEN_START && getEndTime() == ReservationRequest.OPEN_END;
+    }
 
-    public String getUsername() {
-        return username;
+    long getNumber() {
+        return number;
+    }
+
+    /**
+     * @return true if the slot still holds this reservation, so the values read from it before belong to it.
+     */
+    private boolean isCurrent() {
+        return store.holds(slot, number);
     }
-    public void confirmReservation() {
-        this.status = ReservationStatus.CONFIRMED;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Reservation other)) {
+            return false;
+        }
+        return number == other.number;
     }
 
-    public void cancelReservation() {
-        this.status = ReservationStatus.CANCELLED;
+    @Override
+    public int hashCode() {
+        return Long.hashCode(number);
     }
 
     @Override
     public String toString() {
         return "Reservation{" +
-                "reservationNumber:'" + reservationNumber + '\'' +
-                ", buildingName:'" + buildingName + '\'' +
-                ", roomName:'" + roomName + '\'' +
-                ", status:" + status +
+                "reservationNumber:'" + getReservationNumber() + '\'' +
+                ", buildingName:'" + getBuildingName() + '\'' +
+                ", roomName:'" + getRoomName() + '\'' +
+                ", startTime:" + getStartTime() +
+                ", endTime:" + getEndTime() +
+                ", status:" + getStatus() +
                 '}';
     }
 
@@ -0,0 +1,165 @@
+package reservations;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Creates the 64-bit reservation numbers. From the highest bit down a number holds
+ * <pre>[1 bit unused][31 bits seconds since 2024-01-01][4 bits node][20 bits building][8 bits sequence]</pre>
+ * so numbers sort by the second they were created in, and the building a reservation belongs to can be read from its
+ * number without looking it up. The seconds last until 2092 and the building field holds IDs up to
+ * {@link #MAX_BUILDING_ID}. Each building has its own sequence, advanced with a CAS; when more than 256 numbers are
+ * taken in one second the building's clock runs ahead of the wall clock instead of waiting. The time in a number is
+ * therefore only an ordering and is not reported as the time a reservation was made.
+ * <p>
+ * Numbers are printed as 13 characters of Crockford's base 32, which keeps their order when compared as strings.
+ * The node is set with the system property {@code booking.node.id} (0 to 15, default 0).
+ */
+public class ReservationIds {
+    public static final int MAX_BUILDING_ID = (1 << 20) - 1;
+
+    private static final long EPOCH = 1704067200000L;
+    private static final long SECOND_MILLIS = 1000;
+    private static final int SEQUENCE_BITS = 8;
+    private static final int BUILDING_BITS = 20;
+    private static final int NODE_BITS = 4;
+    private static final int BUILDING_SHIFT = SEQUENCE_BITS;
+    private static final int NODE_SHIFT = BUILDING_SHIFT + BUILDING_BITS;
+    private static final int TIME_SHIFT = NODE_SHIFT + NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int CHUNK_BITS = 12;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    private static final long NODE_ID = nodeId();
+    /**
+     * Per building the last value taken as (seconds since the epoch &lt;&lt; SEQUENCE_BITS) | sequence, in chunks of
+     * 4096 buildings that are created when a building of the chunk takes its first number.
+     */
+    private static final AtomicReferenceArray<AtomicLongArray> lastTaken =
+            new AtomicReferenceArray<>((MAX_BUILDING_ID >>> CHUNK_BITS) + 1);
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+            DECODE[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+        // Characters Crockford's base 32 reads as the digits they resemble
+        DECODE['O'] = DECODE['o'] = 0;
+        DECODE['I'] = DECODE['i'] = DECODE['L'] = DECODE['l'] = 1;
+    }
+
+    /**
+     * Takes the next number for a reservation of a building.
+     *
+     * @param buildingId The ID of the building, at most {@link #MAX_BUILDING_ID}.
+     * @return A number no other call on this node returns.
+     */
+    public static long next(int buildingId) {
+        if (!fits(buildingId)) {
+            throw new IllegalArgumentException("Building ID " + buildingId + " does not fit into a reservation number");
+        }
+        AtomicLongArray chunk = chunkOf(buildingId);
+        int index = buildingId & ((1 << CHUNK_BITS) - 1);
+        long now = (System.currentTimeMillis() - EPOCH) / SECOND_MILLIS << SEQUENCE_BITS;
+        while (true) {
+            long last = chunk.get(index);
+            // An overflowing sequence carries into the seconds, so the clock of the building moves ahead
+            long taken = Math.max(now, last + 1);
+            if (chunk.compareAndSet(index, last, taken)) {
+                return compose(taken >>> SEQUENCE_BITS, buildingId, taken & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * @return true if reservation numbers can be taken for the building, i.e. its ID is between 0 and
+     * {@link #MAX_BUILDING_ID}.
+     */
+    public static boolean fits(int buildingId) {
+        return buildingId >= 0 && buildingId <= MAX_BUILDING_ID;
+    }
+
+    /**
+     * Makes sure numbers taken later are greater than an existing one, e.g. one recovered after a restart
+     * while the clock of its building was ahead.
+     */
+    public static void observe(long reservationNumber) {
+        if (nodeIdOf(reservationNumber) != NODE_ID) {
+            return;
+        }
+        int buildingId = buildingIdOf(reservationNumber);
+        long taken = (reservationNumber >>> TIME_SHIFT) << SEQUENCE_BITS | (reservationNumber & SEQUENCE_MASK);
+        chunkOf(buildingId).accumulateAndGet(buildingId & ((1 << CHUNK_BITS) - 1), taken, Math::max);
+    }
+
+    /**
+     * @return The ID of the building the reservation with this number belongs to.
+     */
+    public static int buildingIdOf(long reservationNumber) {
+        return (int) (reservationNumber >>> BUILDING_SHIFT) & MAX_BUILDING_ID;
+    }
+
+    /**
+     * @return The printable form of a number.
+     */
+    public static String format(long reservationNumber) {
+        char[] encoded = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            encoded[i] = ALPHABET[(int) (reservationNumber & 31)];
+            reservationNumber >>>= 5;
+        }
+        return new String(encoded);
+    }
+
+    /**
+     * Reads a number in its printable form, ignoring case.
+     *
+     * @return The number, or -1 if the text is not a reservation number.
+     */
+    public static long parse(String reservationNumber) {
+        if (reservationNumber == null || reservationNumber.length() != ENCODED_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            char c = reservationNumber.charAt(i);
+            int digit = c < DECODE.length ? DECODE[c] : -1;
+            // 13 characters hold 65 bits, so the first one carries only the lowest 3 of its 5 bits
+            if (digit < 0 || (i == 0 && digit > 7)) {
+                return -1;
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    private static AtomicLongArray chunkOf(int buildingId) {
+        int i = buildingId >>> CHUNK_BITS;
+        AtomicLongArray chunk = lastTaken.get(i);
+        if (chunk == null) {
+            lastTaken.compareAndSet(i, null, new AtomicLongArray(1 << CHUNK_BITS));
+            chunk = lastTaken.get(i);
+        }
+        return chunk;
+    }
+
+    private static long compose(long seconds, int buildingId, long sequence) {
+        return seconds << TIME_SHIFT | NODE_ID << NODE_SHIFT | (long) buildingId << BUILDING_SHIFT | sequence;
+    }
+
+    private static long nodeIdOf(long reservationNumber) {
+        return (reservationNumber >>> NODE_SHIFT) & ((1 << NODE_BITS) - 1);
+    }
+
+    private static long nodeId() {
+        int nodeId = Integer.getInteger("booking.node.id", 0);
+        if (nodeId < 0 || nodeId >= 1 << NODE_BITS) {
+            throw new IllegalArgumentException("booking.node.id has to be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+        return nodeId;
+    }
+}
@@ -1,16 +1,50 @@
 package reservations;
 
-import java.util.HashMap;
+import persistence.PersistenceManager;
+import persistence.StateEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
+/**
+ * Keeps the reservations of the system in a {@link ReservationStore}, indexed by reservation number and additionally
+ * by username, by building and by building and room. The indexes hold slot numbers, and the names are dictionary IDs,
+ * so millions of reservations do not create millions of objects. Queries return {@link Reservation} views in the order
+ * the reservations were made.
+ * <p>
+ * A reservation is changed while holding the lock of its stripe of the number index, and the secondary indexes are
+ * updated under that lock, so a reservation is either in all indexes or in none of them. Every change is recorded in
+ * the write-ahead log under the same lock, so the log holds the changes of a reservation in the order they were made.
+ */
 public class ReservationManager {
-    private static final Map<String, Reservation> reservations = new HashMap<>();
+    private static final ReservationStore store = new ReservationStore();
+    private static final NumberIndex reservationsByNumber = new NumberIndex(Runtime.getRuntime().availableProcessors() * 8);
+    private static final Map<Integer, SlotSet> reservationsByUser = new ConcurrentHashMap<>();
+    private static final Map<Integer, SlotSet> reservationsByBuilding = new ConcurrentHashMap<>();
+    private static final Map<Long, SlotSet> reservationsByRoom = new ConcurrentHashMap<>();
 
-    public static void createReservations(Reservation reservation) {
-        reservation.confirmReservation();
-        reservations.put(reservation.getReservationNumber(), reservation);
+    /**
+     * Creates and confirms a reservation with a new reservation number.
+     *
+     * @param buildingId The ID of the building, which becomes part of the reservation number.
+     * @param startTime  Start of the reserved time slot in epoch milliseconds, inclusive.
+     * @param endTime    End of the reserved time slot in epoch milliseconds, exclusive.
+     * @return The created reservation.
+     */
+    public static Reservation createReservation(String username, int buildingId, String buildingName, String roomName,
+                                                long startTime, long endTime) {
+        long number = ReservationIds.next(buildingId);
+        long stamp = PersistenceManager.beginUpdate();
+        try {
+            return put(number, username, buildingName, roomName, startTime, endTime, true);
+        } finally {
+            PersistenceManager.endUpdate(stamp);
+        }
     }
 
 
@@ -18,30 +52,107 @@ public class ReservationManager {
      * Cancels a reservation with the given reservation number.
      *
      * @param reservationPassed The reservation object that contains the number of the reservation to be cancelled.
+     * @return true if this call cancelled the reservation, false if it was already cancelled.
+     */
+    public static boolean cancelReservation(Reservation reservationPassed) {
+        long stamp = PersistenceManager.beginUpdate();
+        try {
+            return remove(reservationPassed.getNumber(), true);
+        } finally {
+            PersistenceManager.endUpdate(stamp);
+        }
+    }
+
+    /**
+     * Adds a cancelled reservation again under its original number, e.g. when it was cancelled as part of an
+     * all-or-nothing batch that failed afterwards. It is recorded in the log like a new reservation, so it survives
+     * a restart although its cancellation was recorded before.
+     *
+     * @param reservationNumber The number the reservation had, in its printable form.
+     * @return The reinstated reservation, or null if the number is not a reservation number.
+     */
+    public static Reservation reinstateReservation(String reservationNumber, String username, String buildingName,
+                                                   String roomName, long startTime, long endTime) {
+        long number = ReservationIds.parse(reservationNumber);
+        if (number < 0) {
+            return null;
+        }
+        long stamp = PersistenceManager.beginUpdate();
+        try {
+            return put(number, username, buildingName, roomName, startTime, endTime, true);
+        } finally {
+            PersistenceManager.endUpdate(stamp);
+        }
+    }
+
+    /**
+     * Adds a recovered reservation without recording it in the log again. Replaces a reservation with the same number.
      */
-    public static void cancelReservation(Reservation reservationPassed) {
-        Reservation reservation = reservations.get(reservationPassed.getReservationNumber());
+    public static void restoreReservation(String reservationNumber, String username, String buildingName,
+                                          String roomName, long startTime, long endTime) {
+        long number = ReservationIds.parse(reservationNumber);
+        if (number >= 0) {
+            ReservationIds.observe(number);
+            put(number, username, buildingName, roomName, startTime, endTime, false);
+        }
+    }
 
-        if (reservation != null && reservation.getStatus() != ReservationStatus.CANCELLED) {
-            reservation.cancelReservation();
-            // Use the reservation number to remove the reservation from the map
-            reservations.remove(reservation.getReservationNumber());
+    /**
+     * Removes a reservation whose cancellation was recovered, without recording it in the log again.
+     *
+     * @param reservationNumber The number of the cancelled reservation.
+     */
+    public static void restoreCancellation(String reservationNumber) {
+        long number = ReservationIds.parse(reservationNumber);
+        if (number >= 0) {
+            remove(number, false);
         }
     }
 
     /**
      * Retrieves all reservations made by a specific user.
-     * This method filters through all reservations stored in the system and returns a list
-     * of reservations that match the given username. If no reservations are found for the user,
-     * an empty list is returned.
+     * If no reservations are found for the user, an empty list is returned.
      *
      * @param username The username of the user whose reservations are to be retrieved.
      * @return A List of {@code Reservation} objects associated with the given username.
      */
     public static List<Reservation> getReservationsByUser(String username) {
-        return reservations.values().stream()
-                .filter(reservation -> username.equals(reservation.getUsername()))
-                .collect(Collectors.toList());
+        int userId = store.users.find(username);
+        if (userId == NameDictionary.NO_NAME) {
+            return new ArrayList<>();
+        }
+        return collect(reservationsByUser.get(userId), slot -> store.userId(slot) == userId);
+    }
+
+    /**
+     * Retrieves all reservations of a building.
+     *
+     * @param buildingName The name of the building, ignoring case.
+     * @return A List of {@code Reservation} objects for rooms of the building.
+     */
+    public static List<Reservation> getReservationsByBuilding(String buildingName) {
+        int buildingId = store.buildings.find(buildingName);
+        if (buildingId == NameDictionary.NO_NAME) {
+            return new ArrayList<>();
+        }
+        return collect(reservationsByBuilding.get(buildingId), slot -> store.buildingId(slot) == buildingId);
+    }
+
+    /**
+     * Retrieves all reservations of a room.
+     *
+     * @param buildingName The name of the building, ignoring case.
+     * @param roomName     The name of the room, ignoring case.
+     * @return A List of {@code Reservation} objects for the room.
+     */
+    public static List<Reservation> getReservationsByRoom(String buildingName, String roomName) {
+        int buildingId = store.buildings.find(buildingName);
+        int roomId = store.rooms.find(roomName);
+        if (buildingId == NameDictionary.NO_NAME || roomId == NameDictionary.NO_NAME) {
+            return new ArrayList<>();
+        }
+        return collect(reservationsByRoom.get(roomKey(buildingId, roomId)),
+                slot -> store.buildingId(slot) == buildingId && store.roomId(slot) == roomId);
     }
 
 
@@ -52,7 +163,126 @@ public class ReservationManager {
      * @return The reservation corresponding to the reservation number, or null if not found.
      */
     public static Reservation getReservationByNumber(String reservationNumber) {
-        return reservations.get(reservationNumber);
+        long number = ReservationIds.parse(reservationNumber);
+        if (number < 0) {
+            return null;
+        }
+        int slot = reservationsByNumber.stripeOf(number).get(number);
+        return slot < 0 ? null : new Reservation(store, slot, number);
+    }
+
+    /**
+     * Passes every reservation to the consumer. Does not block changes; reservations changed while iterating
+     * may or may not be included.
+     */
+    public static void forEachReservation(Consumer<Reservation> consumer) {
+        int slotLimit = store.slotLimit();
+        for (int slot = 0; slot < slotLimit; slot++) {
+            if (store.status(slot) == ReservationStore.FREE) {
+                continue;
+            }
+            long number = store.number(slot);
+            if (store.holds(slot, number)) {
+                consumer.accept(new Reservation(store, slot, number));
+            }
+        }
+    }
+
+    /**
+     * @return The number of reservations.
+     */
+    public static int getReservationCount() {
+        return store.size();
+    }
+
+    private static Reservation put(long number, String username, String buildingName, String roomName,
+                                   long startTime, long endTime, boolean record) {
+        NumberIndex.Stripe stripe = reservationsByNumber.stripeOf(number);
+        synchronized (stripe) {
+            if (record) {
+                PersistenceManager.record(StateEvent.reservationCreated(ReservationIds.format(number), username,
+                        buildingName, roomName, startTime, endTime));
+            }
+            int slot = store.add(number, username, buildingName, roomName, startTime, endTime);
+            int previous = stripe.put(number, slot);
+            if (previous >= 0) {
+                removeFromIndexes(previous);
+                store.remove(previous);
+            }
+            addToIndexes(slot);
+            return new Reservation(store, slot, number);
+        }
+    }
+
+    private static boolean remove(long number, boolean record) {
+        NumberIndex.Stripe stripe = reservationsByNumber.stripeOf(number);
+        synchronized (stripe) {
+            int slot = stripe.remove(number);
+            if (slot < 0) {
+                return false;
+            }
+            if (record) {
+                PersistenceManager.record(StateEvent.reservationCancelled(ReservationIds.format(number),
+                        store.buildings.nameOf(store.buildingId(slot))));
+            }
+            removeFromIndexes(slot);
+            store.remove(slot);
+            return true;
+        }
+    }
+
+    private static void addToIndexes(int slot) {
+        addToIndex(reservationsByUser, store.userId(slot), slot);
+        addToIndex(reservationsByBuilding, store.buildingId(slot), slot);
+        addToIndex(reservationsByRoom, roomKey(store.buildingId(slot), store.roomId(slot)), slot);
+    }
+
+    private static void removeFromIndexes(int slot) {
+        removeFromIndex(reservationsByUser, store.userId(slot), slot);
+        removeFromIndex(reservationsByBuilding, store.buildingId(slot), slot);
+        removeFromIndex(reservationsByRoom, roomKey(store.buildingId(slot), store.roomId(slot)), slot);
+    }
+
+    private static <K> void addToIndex(Map<K, SlotSet> index, K key, int slot) {
+        index.compute(key, (k, slots) -> {
+            SlotSet result = slots == null ? new SlotSet() : slots;
+            result.add(slot);
+            return result;
+        });
+    }
+
+    private static <K> void removeFromIndex(Map<K, SlotSet> index, K key, int slot) {
+        // Empty entries are dropped so the index does not grow with users or rooms that no longer have reservations
+        index.computeIfPresent(key, (k, slots) -> {
+            slots.remove(slot);
+            return slots.isEmpty() ? null : slots;
+        });
+    }
+
+    /**
+     * Creates views of the slots of an index entry. A slot may have been reused by another reservation since the
+     * entry was read, so each one is checked against the query again.
+     */
+    private static List<Reservation> collect(SlotSet slots, IntPredicate matchesQuery) {
+        if (slots == null) {
+            return new ArrayList<>();
+        }
+        int[] snapshot = slots.toArray();
+        List<Reservation> reservations = new ArrayList<>(snapshot.length);
+        for (int slot : snapshot) {
+            long number = store.number(slot);
+            boolean matches = matchesQuery.test(slot);
+            if (matches && store.holds(slot, number)) {
+                reservations.add(new Reservation(store, slot, number));
+            }
+        }
+        // Numbers grow with time, so this lists the reservations in the order they were made, to the second
+        reservations.sort(Comparator.comparingLong(Reservation::getNumber));
+        return reservations;
+    }
+
+    private static long roomKey(int buildingId, int roomId) {
+        return ((long) buildingId << 32) | (roomId & 0xFFFFFFFFL);
     }
 
 }
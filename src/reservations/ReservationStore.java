@@ -0,0 +1,158 @@
+package reservations;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Holds the reservations as a struct of arrays: each field is a column of primitives, and a reservation is the slot
+ * number it occupies in every column. Columns are allocated in chunks, so growing never copies existing reservations.
+ * The reservation number is kept as a long, building, room and username as IDs from {@link NameDictionary}s and
+ * the status as a byte, which makes a reservation cost about 37 bytes instead of several hundred on the heap.
+ * <p>
+ * Slots of removed reservations are reused. A slot is written while its status is {@link #FREE} and published by
+ * setting the status with release semantics. Readers check the status and the number after reading a field,
+ * so they never return a value of a reservation that took over the slot in the meantime.
+ */
+class ReservationStore {
+    static final byte FREE = 0;
+    static final byte CONFIRMED = 1;
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final VarHandle STATUS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    final NameDictionary buildings = new NameDictionary(true);
+    final NameDictionary rooms = new NameDictionary(true);
+    final NameDictionary users = new NameDictionary(false);
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+    private int nextSlot;
+    private int liveCount;
+
+    private static final class Chunk {
+        final long[] number = new long[CHUNK_SIZE];
+        final long[] startTime = new long[CHUNK_SIZE];
+        final long[] endTime = new long[CHUNK_SIZE];
+        final int[] building = new int[CHUNK_SIZE];
+        final int[] room = new int[CHUNK_SIZE];
+        final int[] user = new int[CHUNK_SIZE];
+        final byte[] status = new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Writes a reservation into a free slot and publishes it.
+     *
+     * @return The slot of the reservation.
+     */
+    int add(long number, String username, String buildingName, String roomName,
+            long startTime, long endTime) {
+        int userId = users.idOf(username);
+        int buildingId = buildings.idOf(buildingName);
+        int roomId = rooms.idOf(roomName);
+        int slot = allocate();
+        Chunk chunk = chunks[slot >>> CHUNK_SHIFT];
+        int index = slot & CHUNK_MASK;
+        chunk.number[index] = number;
+        chunk.user[index] = userId;
+        chunk.building[index] = buildingId;
+        chunk.room[index] = roomId;
+        chunk.startTime[index] = startTime;
+        chunk.endTime[index] = endTime;
+        STATUS.setRelease(chunk.status, index, CONFIRMED);
+        return slot;
+    }
+
+    /**
+     * Marks a slot free and makes it available for new reservations.
+     */
+    void remove(int slot) {
+        Chunk chunk = chunks[slot >>> CHUNK_SHIFT];
+        int index = slot & CHUNK_MASK;
+        STATUS.setRelease(chunk.status, index, FREE);
+        // Clearing the number lets readers that started before the removal notice it even after the slot is reused
+        chunk.number[index] = -1;
+        // The fields of the next reservation in this slot must not become visible before it is marked free
+        VarHandle.storeStoreFence();
+        release(slot);
+    }
+
+    /**
+     * Checks that the slot still holds the reservation with the given number. Called after reading fields of the slot:
+     * if it returns true, the fields read before belong to that reservation.
+     */
+    boolean holds(int slot, long number) {
+        VarHandle.loadLoadFence();
+        Chunk chunk = chunks[slot >>> CHUNK_SHIFT];
+        int index = slot & CHUNK_MASK;
+        return (byte) STATUS.getAcquire(chunk.status, index) != FREE
+                && chunk.number[index] == number;
+    }
+
+    long number(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT].number[slot & CHUNK_MASK];
+    }
+
+    int userId(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT].user[slot & CHUNK_MASK];
+    }
+
+    int buildingId(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT].building[slot & CHUNK_MASK];
+    }
+
+    int roomId(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT].room[slot & CHUNK_MASK];
+    }
+
+    long startTime(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT].startTime[slot & CHUNK_MASK];
+    }
+
+    long endTime(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT].endTime[slot & CHUNK_MASK];
+    }
+
+    /**
+     * @return The status of the slot, {@link #FREE} if it holds no reservation.
+     */
+    byte status(int slot) {
+        return (byte) STATUS.getAcquire(chunks[slot >>> CHUNK_SHIFT].status, slot & CHUNK_MASK);
+    }
+
+    /**
+     * @return The number of slots ever used; every live reservation has a smaller slot.
+     */
+    synchronized int slotLimit() {
+        return nextSlot;
+    }
+
+    synchronized int size() {
+        return liveCount;
+    }
+
+    private synchronized int allocate() {
+        liveCount++;
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int slot = nextSlot++;
+        if (slot >>> CHUNK_SHIFT == chunks.length) {
+            Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[grown.length - 1] = new Chunk();
+            chunks = grown;
+        }
+        return slot;
+    }
+
+    private synchronized void release(int slot) {
+        liveCount--;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+}
@@ -0,0 +1,101 @@
+package reservations;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative slot numbers in an open-addressing table with linear probing, so a set of n slots costs
+ * about 8n bytes instead of a node object per entry. Removal shifts the following entries back instead of leaving
+ * tombstones. All methods are synchronized.
+ */
+class SlotSet {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] table = newTable(INITIAL_CAPACITY);
+    private int size;
+
+    synchronized boolean add(int slot) {
+        if ((size + 1) * 4 > table.length * 3) {
+            resize(table.length * 2);
+        }
+        int mask = table.length - 1;
+        int index = hash(slot) & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == slot) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = slot;
+        size++;
+        return true;
+    }
+
+    synchronized boolean remove(int slot) {
+        int mask = table.length - 1;
+        int index = hash(slot) & mask;
+        while (table[index] != slot) {
+            if (table[index] == EMPTY) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        // Moves back every following entry that would no longer be reachable across the new gap
+        int gap = index;
+        int next = (gap + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = hash(table[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = EMPTY;
+        size--;
+        if (size * 8 < table.length && table.length > INITIAL_CAPACITY) {
+            resize(table.length / 2);
+        }
+        return true;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized int[] toArray() {
+        int[] slots = new int[size];
+        int count = 0;
+        for (int slot : table) {
+            if (slot != EMPTY) {
+                slots[count++] = slot;
+            }
+        }
+        return slots;
+    }
+
+    private void resize(int capacity) {
+        int[] old = table;
+        table = newTable(capacity);
+        int mask = capacity - 1;
+        for (int slot : old) {
+            if (slot != EMPTY) {
+                int index = hash(slot) & mask;
+                while (table[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = slot;
+            }
+        }
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(int slot) {
+        return slot * 0x9E3779B9 >>> 7;
+    }
+}
@@ -0,0 +1,118 @@
+package tracing;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One hop of a traced request: the time its message waited in a queue before it was picked up, and how long it was
+ * handled there. Spans of a request share its trace ID and point to the span that sent their message, so the hops can
+ * be put back together in order.
+ * <p>
+ * Start and queue wait use the wall clock in microseconds, so spans of different processes can be compared as far as
+ * their clocks agree. Durations within one span use the monotonic clock.
+ */
+public class Span {
+    @JsonProperty("traceId")
+    private String traceId;
+    @JsonProperty("spanId")
+    private String spanId;
+    @JsonProperty("parentSpanId")
+    private String parentSpanId;
+    @JsonProperty("name")
+    private String name;
+    @JsonProperty("messageType")
+    private String messageType;
+    @JsonProperty("startMicros")
+    private long startMicros;
+    @JsonProperty("queueWaitMicros")
+    private long queueWaitMicros;
+    @JsonProperty("durationMicros")
+    private long durationMicros;
+    @JsonIgnore
+    private long startNanos;
+
+    /**
+     * Creates one more empty constructor for successful serializing.
+     */
+    public Span() {
+    }
+
+    Span(String traceId, String spanId, String parentSpanId, String name, String messageType, long startMicros,
+         long queueWaitMicros) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.messageType = messageType;
+        this.startMicros = startMicros;
+        this.queueWaitMicros = queueWaitMicros;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Sets the duration from the creation of the span until now.
+     */
+    void end() {
+        durationMicros = (System.nanoTime() - startNanos) / 1000;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    /**
+     * @return The span that sent the message of this span, or null for the first span of a trace.
+     */
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    /**
+     * @return Where the span was recorded: the queue the message was taken from, a building's mailbox, or the client.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return When handling began, in microseconds since the epoch.
+     */
+    public long getStartMicros() {
+        return startMicros;
+    }
+
+    /**
+     * @return How long the message waited between being sent and being picked up, in microseconds.
+     */
+    public long getQueueWaitMicros() {
+        return queueWaitMicros;
+    }
+
+    /**
+     * @return How long the message was handled, in microseconds. For the first span of a trace, the whole request.
+     */
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" +
+                "traceId:'" + traceId + '\'' +
+                ", spanId:'" + spanId + '\'' +
+                ", parentSpanId:'" + parentSpanId + '\'' +
+                ", name:'" + name + '\'' +
+                ", messageType:" + messageType +
+                ", queueWaitMicros:" + queueWaitMicros +
+                ", durationMicros:" + durationMicros +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package tracing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent spans in a fixed ring. Adding claims the next position with one atomic increment and
+ * overwrites whatever span was there, so recording never blocks and memory never grows.
+ */
+class SpanBuffer {
+    private final AtomicReferenceArray<Span> spans;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity The number of spans kept. It is rounded up to a power of two.
+     */
+    SpanBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.spans = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    void add(Span span) {
+        spans.set((int) (next.getAndIncrement() & mask), span);
+    }
+
+    /**
+     * @return The kept spans ordered by start time. Spans added while this runs may or may not be included.
+     */
+    List<Span> snapshot() {
+        List<Span> snapshot = new ArrayList<>(spans.length());
+        for (int i = 0; i < spans.length(); i++) {
+            Span span = spans.get(i);
+            if (span != null) {
+                snapshot.add(span);
+            }
+        }
+        snapshot.sort(Comparator.comparingLong(Span::getStartMicros));
+        return snapshot;
+    }
+
+    /**
+     * @return The number of spans that were overwritten by newer ones.
+     */
+    long getOverwritten() {
+        return Math.max(0, next.get() - spans.length());
+    }
+}
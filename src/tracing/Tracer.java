@@ -0,0 +1,186 @@
+package tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import props.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Traces requests across the Client, the RentalAgent and the buildings. The trace context travels in the headers of
+ * the {@link Message}: the trace ID, the span that sent the message and when it was sent. Every hop that takes a traced
+ * message from a queue records a {@link Span} with the time the message waited and the time it was handled, into a
+ * bounded in-memory buffer that {@link #dump(OutputStream)} writes out.
+ * <p>
+ * Sampling is decided once, when a client starts a request, with the probability {@code booking.tracing.sampleRate}
+ * (default 0, no tracing). Later hops only follow the headers, so a message that is not traced costs a header lookup
+ * on a message that usually has no headers at all. The buffer keeps the last {@code booking.tracing.bufferSize}
+ * (default 8192) spans.
+ */
+public class Tracer {
+    public static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("booking.tracing.sampleRate", "0"));
+    static final String TRACE_ID_HEADER = "traceId";
+    static final String SPAN_ID_HEADER = "spanId";
+    static final String SENT_AT_HEADER = "sentAt";
+
+    private static final SpanBuffer spans = new SpanBuffer(Integer.getInteger("booking.tracing.bufferSize", 8192));
+    /**
+     * The span whose message the thread is handling, so messages sent meanwhile become its children.
+     */
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Decides whether a new request is traced and, if so, starts its trace. A request sent while handling a traced
+     * message belongs to that trace instead and does not start one.
+     *
+     * @param name    Where the request starts, e.g. "CLIENT".
+     * @param request The request, which gets the trace headers.
+     * @return The first span of the trace, to be passed to {@link #endSpan(Span)} once the reply arrived, or null if
+     * the request is not traced.
+     */
+    public static Span startTrace(String name, Message request) {
+        if (SAMPLE_RATE <= 0 || current.get() != null || ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+            return null;
+        }
+        long now = nowMicros();
+        Span root = new Span(newId(), newId(), null, name, request.getType().name(), now, 0);
+        request.setHeader(TRACE_ID_HEADER, root.getTraceId());
+        request.setHeader(SPAN_ID_HEADER, root.getSpanId());
+        request.setHeader(SENT_AT_HEADER, Long.toString(now));
+        return root;
+    }
+
+    /**
+     * @return true if the message carries a trace context, so handling it records a span.
+     */
+    public static boolean isTraced(Message message) {
+        return message.getHeader(TRACE_ID_HEADER) != null;
+    }
+
+    /**
+     * Starts the span of a message that was taken from a queue and makes it the current span of the thread until
+     * {@link #endSpan(Span)}.
+     *
+     * @param name    The queue or mailbox the message was taken from.
+     * @param message The message about to be handled.
+     * @return The span, or null if the message is not traced.
+     */
+    public static Span startSpan(String name, Message message) {
+        String traceId = message.getHeader(TRACE_ID_HEADER);
+        if (traceId == null) {
+            return null;
+        }
+        long now = nowMicros();
+        long sentAt = parseSentAt(message.getHeader(SENT_AT_HEADER));
+        long queueWait = sentAt <= 0 ? 0 : Math.max(0, now - sentAt);
+        Span span = new Span(traceId, newId(), message.getHeader(SPAN_ID_HEADER), name,
+                message.getType() == null ? null : message.getType().name(), now, queueWait);
+        // Replies that are sent later from another thread name the span that handled their request as parent
+        message.setHeader(SPAN_ID_HEADER, span.getSpanId());
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Ends a span and keeps it in the buffer. Does nothing for null, so callers need not check whether the message
+     * was traced.
+     */
+    public static void endSpan(Span span) {
+        if (span == null) {
+            return;
+        }
+        span.end();
+        if (current.get() == span) {
+            current.remove();
+        }
+        spans.add(span);
+    }
+
+    /**
+     * Sets the trace headers of a message that is about to be sent. It becomes a child of the span the thread is
+     * handling, or else of the span that handled the message it answers.
+     *
+     * @param outgoing The message to be sent.
+     * @param cause    The request the message replies to, or null.
+     */
+    public static void inject(Message outgoing, Message cause) {
+        Span span = current.get();
+        if (span != null) {
+            setContext(outgoing, span.getTraceId(), span.getSpanId());
+        } else if (cause != null && cause.getHeader(TRACE_ID_HEADER) != null) {
+            setContext(outgoing, cause.getHeader(TRACE_ID_HEADER), cause.getHeader(SPAN_ID_HEADER));
+        } else if (outgoing.getHeader(TRACE_ID_HEADER) != null) {
+            outgoing.setHeader(SENT_AT_HEADER, Long.toString(nowMicros()));
+        }
+    }
+
+    /**
+     * Marks a traced message that is passed to another thread of this process, like a building's mailbox, as sent by
+     * the current span now. The span started on the other thread then measures the wait from here.
+     */
+    public static void handOff(Message message) {
+        Span span = current.get();
+        if (span != null && message.getHeader(TRACE_ID_HEADER) != null) {
+            setContext(message, span.getTraceId(), span.getSpanId());
+        }
+    }
+
+    /**
+     * @return The kept spans ordered by start time.
+     */
+    public static List<Span> getSpans() {
+        return spans.snapshot();
+    }
+
+    /**
+     * Writes the kept spans as JSON, one span per line, ordered by start time.
+     */
+    public static void dump(OutputStream out) throws IOException {
+        for (Span span : spans.snapshot()) {
+            out.write(objectMapper.writeValueAsBytes(span));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * @return The number of spans that were dropped because the buffer was full.
+     */
+    public static long getOverwrittenSpanCount() {
+        return spans.getOverwritten();
+    }
+
+    private static void setContext(Message message, String traceId, String parentSpanId) {
+        message.setHeader(TRACE_ID_HEADER, traceId);
+        message.setHeader(SPAN_ID_HEADER, parentSpanId);
+        message.setHeader(SENT_AT_HEADER, Long.toString(nowMicros()));
+    }
+
+    /**
+     * @return The time from the header, or 0 if it is missing or not a number. The header comes from the wire, so a
+     * malformed value must not keep the message from being handled.
+     */
+    private static long parseSentAt(String sentAt) {
+        if (sentAt == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(sentAt);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String newId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    private static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+}
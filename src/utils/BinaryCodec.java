@@ -0,0 +1,414 @@
+package utils;
+
+import props.AvailabilityDelta;
+import props.AvailabilityPage;
+import props.AvailabilityQuery;
+import props.AvailabilityState;
+import props.BuildingAvailability;
+import props.Message;
+import props.MessageType;
+import props.ReservationBatch;
+import props.ReservationBatchResult;
+import props.ReservationRequest;
+import props.ReservationResult;
+import props.RoomStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary codec. A message is written as a format version byte, the tag of its {@link MessageType} and the payload
+ * in the shape of the {@link props.PayloadSchema} of the type, so no field names or type information are sent.
+ * Numbers and lengths are variable-length integers and strings are UTF-8 prefixed by their length, with 0 meaning null.
+ * Strings are read straight from the received bytes. The payload of a {@link CachedPayload} is encoded only once.
+ * Version 2 added the time slot to reservation requests, version 3 the correlation ID and reply-to queue after the tag and
+ * version 4 the headers after those; messages of older versions are still read, as requests without a slot, without a
+ * reply address or without headers.
+ */
+public class BinaryCodec implements MessageCodec {
+    public static final String CONTENT_TYPE = "application/vnd.booking.message+binary";
+    private static final int VERSION = 4;
+    private static final int VERSION_WITHOUT_HEADERS = 3;
+    private static final int VERSION_WITHOUT_REPLY_ADDRESS = 2;
+    private static final int VERSION_WITHOUT_TIME_SLOTS = 1;
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        Object payload = message.getPayload();
+        byte[] cachedPayload = payload instanceof CachedPayload cached ? encodeCached(message.getType(), cached) : null;
+        BinaryWriter output = new BinaryWriter(INITIAL_BUFFER_SIZE + (cachedPayload == null ? 0 : cachedPayload.length));
+        output.writeByte(VERSION);
+        output.writeByte(message.getType().getTag());
+        output.writeString(message.getCorrelationId());
+        output.writeString(message.getReplyTo());
+        writeHeaders(output, message.getHeaders());
+        if (cachedPayload != null) {
+            output.writeBytes(cachedPayload);
+        } else {
+            writePayload(output, message.getType(), payload);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] encodeCached(MessageType type, CachedPayload payload) throws IOException {
+        byte[] encoded = (byte[]) payload.getCachedEncoding(CONTENT_TYPE);
+        if (encoded == null) {
+            BinaryWriter output = new BinaryWriter(INITIAL_BUFFER_SIZE);
+            writePayload(output, type, payload.getValue());
+            encoded = output.toByteArray();
+            payload.cacheEncoding(CONTENT_TYPE, encoded);
+        }
+        return encoded;
+    }
+
+    private static void writePayload(BinaryWriter output, MessageType type, Object payload) throws IOException {
+        switch (type.getPayloadSchema()) {
+            case EMPTY:
+                break;
+            case TEXT:
+                output.writeString(payload == null ? null : payload.toString());
+                break;
+            case NUMBER:
+                output.writeBoolean(payload != null);
+                if (payload != null) {
+                    output.writeSignedVarInt(expect(type, payload, Number.class).intValue());
+                }
+                break;
+            case TEXT_LIST:
+                writeStringList(output, expect(type, payload, List.class));
+                break;
+            case RESERVATION_REQUEST:
+                writeReservationRequest(output, expect(type, payload, ReservationRequest.class));
+                break;
+            case RESERVATION_BATCH:
+                writeReservationBatch(output, expect(type, payload, ReservationBatch.class));
+                break;
+            case RESERVATION_BATCH_RESULT:
+                writeReservationBatchResult(output, expect(type, payload, ReservationBatchResult.class));
+                break;
+            case AVAILABILITY_STATE:
+                writeAvailabilityState(output, expect(type, payload, AvailabilityState.class));
+                break;
+            case AVAILABILITY_DELTA:
+                writeAvailabilityDelta(output, expect(type, payload, AvailabilityDelta.class));
+                break;
+            case AVAILABILITY_QUERY:
+                writeAvailabilityQuery(output, expect(type, payload, AvailabilityQuery.class));
+                break;
+            case AVAILABILITY_PAGE:
+                writeAvailabilityPage(output, expect(type, payload, AvailabilityPage.class));
+                break;
+        }
+    }
+
+    @Override
+    public Message decode(byte[] body) throws IOException {
+        BinaryReader input = new BinaryReader(body);
+        int version = input.readByte();
+        if (version < VERSION_WITHOUT_TIME_SLOTS || version > VERSION) {
+            throw new IOException("Unsupported message format version: " + version);
+        }
+        int tag = input.readByte();
+        MessageType type = MessageType.fromTag(tag);
+        if (type == null) {
+            throw new IOException("Unknown message type tag: " + tag);
+        }
+        String correlationId = null;
+        String replyTo = null;
+        Map<String, String> headers = null;
+        if (version > VERSION_WITHOUT_REPLY_ADDRESS) {
+            correlationId = input.readString();
+            replyTo = input.readString();
+        }
+        if (version > VERSION_WITHOUT_HEADERS) {
+            headers = readHeaders(input);
+        }
+        Object payload = switch (type.getPayloadSchema()) {
+            case EMPTY -> null;
+            case TEXT -> input.readString();
+            case NUMBER -> input.readBoolean() ? input.readSignedVarInt() : null;
+            case TEXT_LIST -> readStringList(input);
+            case RESERVATION_REQUEST -> readReservationRequest(input, version);
+            case RESERVATION_BATCH -> readReservationBatch(input, version);
+            case RESERVATION_BATCH_RESULT -> readReservationBatchResult(input, version);
+            case AVAILABILITY_STATE -> readAvailabilityState(input);
+            case AVAILABILITY_DELTA -> readAvailabilityDelta(input);
+            case AVAILABILITY_QUERY -> readAvailabilityQuery(input);
+            case AVAILABILITY_PAGE -> readAvailabilityPage(input);
+        };
+        Message message = new Message(type, payload);
+        message.setCorrelationId(correlationId);
+        message.setReplyTo(replyTo);
+        message.setHeaders(headers);
+        return message;
+    }
+
+    private static void writeHeaders(BinaryWriter output, Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            output.writeVarInt(0);
+            return;
+        }
+        output.writeVarInt(headers.size());
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            output.writeString(header.getKey());
+            output.writeString(header.getValue());
+        }
+    }
+
+    private static Map<String, String> readHeaders(BinaryReader input) throws IOException {
+        int count = checkCount(input, input.readVarInt());
+        if (count == 0) {
+            return null;
+        }
+        Map<String, String> headers = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            headers.put(input.readString(), input.readString());
+        }
+        return headers;
+    }
+
+    /**
+     * Checks a count of elements read from the message before anything is allocated for them. Every element takes at
+     * least one byte, so a count above the remaining bytes can only come from a corrupt or hostile message.
+     *
+     * @return The count.
+     */
+    private static int checkCount(BinaryReader input, int count) throws IOException {
+        if (count < 0 || count > input.remaining()) {
+            throw new IOException("Invalid element count " + count + " with " + input.remaining() + " bytes left");
+        }
+        return count;
+    }
+
+    private static <T> T expect(MessageType type, Object payload, Class<T> payloadClass) throws IOException {
+        if (payload != null && !payloadClass.isInstance(payload)) {
+            throw new IOException("Payload of " + type + " must be a " + payloadClass.getSimpleName()
+                    + " but is a " + payload.getClass().getSimpleName());
+        }
+        return payloadClass.cast(payload);
+    }
+
+    private static void writeStringList(BinaryWriter output, List<?> list) {
+        if (list == null) {
+            output.writeVarInt(0);
+            return;
+        }
+        output.writeVarInt(list.size() + 1);
+        for (Object item : list) {
+            output.writeString(item == null ? null : item.toString());
+        }
+    }
+
+    private static List<String> readStringList(BinaryReader input) throws IOException {
+        int sizePlusOne = input.readVarInt();
+        if (sizePlusOne == 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(checkCount(input, sizePlusOne - 1));
+        for (int i = 1; i < sizePlusOne; i++) {
+            list.add(input.readString());
+        }
+        return list;
+    }
+
+    private static void writeReservationRequest(BinaryWriter output, ReservationRequest request) {
+        output.writeBoolean(request != null);
+        if (request != null) {
+            output.writeString(request.getUsername());
+            output.writeString(request.getBuildingName());
+            output.writeString(request.getRoomName());
+            output.writeString(request.getReservationNumber());
+            output.writeVarLong(request.getStartTime());
+            output.writeVarLong(request.getEndTime());
+        }
+    }
+
+    private static ReservationRequest readReservationRequest(BinaryReader input, int version) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        ReservationRequest request = new ReservationRequest(input.readString(), input.readString(), input.readString(), input.readString());
+        if (version > VERSION_WITHOUT_TIME_SLOTS) {
+            request.setStartTime(input.readVarLong());
+            request.setEndTime(input.readVarLong());
+        }
+        return request;
+    }
+
+    private static void writeReservationBatch(BinaryWriter output, ReservationBatch batch) {
+        output.writeBoolean(batch != null);
+        if (batch != null) {
+            output.writeString(batch.getUsername());
+            output.writeBoolean(batch.isAllOrNothing());
+            List<ReservationRequest> requests = batch.getRequests();
+            output.writeVarInt(requests == null ? 0 : requests.size() + 1);
+            if (requests != null) {
+                for (ReservationRequest request : requests) {
+                    writeReservationRequest(output, request);
+                }
+            }
+        }
+    }
+
+    private static ReservationBatch readReservationBatch(BinaryReader input, int version) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        String username = input.readString();
+        boolean allOrNothing = input.readBoolean();
+        int sizePlusOne = input.readVarInt();
+        List<ReservationRequest> requests = null;
+        if (sizePlusOne > 0) {
+            requests = new ArrayList<>(checkCount(input, sizePlusOne - 1));
+            for (int i = 1; i < sizePlusOne; i++) {
+                requests.add(readReservationRequest(input, version));
+            }
+        }
+        return new ReservationBatch(username, allOrNothing, requests);
+    }
+
+    private static void writeReservationBatchResult(BinaryWriter output, ReservationBatchResult batchResult) {
+        output.writeBoolean(batchResult != null);
+        if (batchResult != null) {
+            List<ReservationResult> results = batchResult.getResults();
+            output.writeVarInt(results == null ? 0 : results.size() + 1);
+            if (results != null) {
+                for (ReservationResult result : results) {
+                    writeReservationRequest(output, result.getRequest());
+                    // Tag 0 belongs to no type and stands for a missing status
+                    output.writeByte(result.getStatus() == null ? 0 : result.getStatus().getTag());
+                    output.writeString(result.getDetail());
+                }
+            }
+        }
+    }
+
+    private static ReservationBatchResult readReservationBatchResult(BinaryReader input, int version) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        int sizePlusOne = input.readVarInt();
+        List<ReservationResult> results = null;
+        if (sizePlusOne > 0) {
+            results = new ArrayList<>(checkCount(input, sizePlusOne - 1));
+            for (int i = 1; i < sizePlusOne; i++) {
+                ReservationRequest request = readReservationRequest(input, version);
+                MessageType status = MessageType.fromTag(input.readByte());
+                results.add(new ReservationResult(request, status, input.readString()));
+            }
+        }
+        return new ReservationBatchResult(results);
+    }
+
+    private static void writeAvailabilityState(BinaryWriter output, AvailabilityState state) {
+        output.writeBoolean(state != null);
+        if (state != null) {
+            output.writeString(state.getStream());
+            output.writeVarLong(state.getSequence());
+            output.writeVarInt(state.getBuildings().size());
+            for (BuildingAvailability building : state.getBuildings()) {
+                output.writeVarInt(building.getBuildingId());
+                output.writeString(building.getBuildingName());
+                writeStringList(output, building.getRoomNames());
+                output.writeVarInt(building.getBookedRooms().length);
+                for (long word : building.getBookedRooms()) {
+                    output.writeVarLong(word);
+                }
+            }
+        }
+    }
+
+    private static AvailabilityState readAvailabilityState(BinaryReader input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        String stream = input.readString();
+        long sequence = input.readVarLong();
+        int buildingCount = checkCount(input, input.readVarInt());
+        List<BuildingAvailability> buildings = new ArrayList<>(buildingCount);
+        for (int i = 0; i < buildingCount; i++) {
+            int buildingId = input.readVarInt();
+            String buildingName = input.readString();
+            List<String> roomNames = readStringList(input);
+            long[] bookedRooms = new long[checkCount(input, input.readVarInt())];
+            for (int w = 0; w < bookedRooms.length; w++) {
+                bookedRooms[w] = input.readVarLong();
+            }
+            buildings.add(new BuildingAvailability(buildingId, buildingName, roomNames, bookedRooms));
+        }
+        return new AvailabilityState(stream, sequence, buildings);
+    }
+
+    private static void writeAvailabilityDelta(BinaryWriter output, AvailabilityDelta delta) {
+        output.writeBoolean(delta != null);
+        if (delta != null) {
+            output.writeString(delta.getStream());
+            output.writeVarLong(delta.getSequence());
+            output.writeVarInt(delta.getBuildingId());
+            output.writeSignedVarInt(delta.getRoomIndex());
+            output.writeBoolean(delta.isBooked());
+        }
+    }
+
+    private static AvailabilityDelta readAvailabilityDelta(BinaryReader input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        return new AvailabilityDelta(input.readString(), input.readVarLong(), input.readVarInt(),
+                input.readSignedVarInt(), input.readBoolean());
+    }
+
+    private static void writeAvailabilityQuery(BinaryWriter output, AvailabilityQuery query) {
+        output.writeBoolean(query != null);
+        if (query != null) {
+            writeStringList(output, query.getBuildingNames());
+            output.writeString(query.getBuildingNamePrefix());
+            output.writeBoolean(query.isFreeOnly());
+            output.writeVarInt(query.getMinFreeRooms());
+            output.writeVarInt(query.getPageSize());
+            output.writeString(query.getCursor());
+        }
+    }
+
+    private static AvailabilityQuery readAvailabilityQuery(BinaryReader input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        return new AvailabilityQuery(readStringList(input), input.readString(), input.readBoolean(), input.readVarInt(),
+                input.readVarInt(), input.readString());
+    }
+
+    private static void writeAvailabilityPage(BinaryWriter output, AvailabilityPage page) {
+        output.writeBoolean(page != null);
+        if (page != null) {
+            output.writeVarInt(page.getRooms().size());
+            for (RoomStatus room : page.getRooms()) {
+                output.writeString(room.getBuildingName());
+                output.writeString(room.getRoomName());
+                output.writeBoolean(room.isBooked());
+            }
+            output.writeString(page.getNextCursor());
+        }
+    }
+
+    private static AvailabilityPage readAvailabilityPage(BinaryReader input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        int roomCount = checkCount(input, input.readVarInt());
+        List<RoomStatus> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            rooms.add(new RoomStatus(input.readString(), input.readString(), input.readBoolean()));
+        }
+        return new AvailabilityPage(rooms, input.readString());
+    }
+}
@@ -0,0 +1,29 @@
+package utils;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A payload that is sent many times without changing, such as a snapshot that answers many requests. The codecs encode
+ * its value once per content type and keep the bytes in the payload, so sending it again only copies them.
+ * Implementations have to be immutable.
+ */
+@JsonSerialize(using = CachedPayloadSerializer.class)
+public interface CachedPayload {
+
+    /**
+     * @return The value that is encoded in place of the payload, in the shape of the payload schema of the message.
+     */
+    Object getValue();
+
+    /**
+     * @return The encoded value for the content type of a codec, in the form the codec keeps it, or null if it was
+     * not encoded yet.
+     */
+    Object getCachedEncoding(String contentType);
+
+    /**
+     * Keeps the encoded value for the content type of a codec. Encoding the same value twice gives the same result,
+     * so concurrent callers may overwrite each other.
+     */
+    void cacheEncoding(String contentType, Object encoded);
+}
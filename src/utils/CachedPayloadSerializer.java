@@ -0,0 +1,26 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link CachedPayload} as the JSON of its value, serializing the value only the first time. The JSON is kept
+ * as a {@link SerializedString}, which also keeps its UTF-8 bytes, so later messages copy the bytes as they are.
+ */
+public class CachedPayloadSerializer extends JsonSerializer<CachedPayload> {
+
+    @Override
+    public void serialize(CachedPayload payload, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        SerializableString json = (SerializableString) payload.getCachedEncoding(JSONCodec.CONTENT_TYPE);
+        if (json == null) {
+            json = new SerializedString(JSONHandler.serializeValue(payload.getValue()));
+            payload.cacheEncoding(JSONCodec.CONTENT_TYPE, json);
+        }
+        generator.writeRawValue(json);
+    }
+}
@@ -0,0 +1,27 @@
+package utils;
+
+import props.Message;
+
+import java.io.IOException;
+
+/**
+ * Codec writing messages as JSON. Slower and larger than {@link BinaryCodec}, but readable in the broker's management UI.
+ */
+public class JSONCodec implements MessageCodec {
+    public static final String CONTENT_TYPE = "application/json";
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public byte[] encode(Message message) throws IOException {
+        return JSONHandler.serializeToBytes(message);
+    }
+
+    @Override
+    public Message decode(byte[] body) throws IOException {
+        return JSONHandler.deserialize(body);
+    }
+}
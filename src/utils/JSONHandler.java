@@ -3,7 +3,9 @@ package utils;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import props.Message;
-import reservations.Reservation;
+import props.PayloadSchema;
+
+import java.io.IOException;
 
 public class JSONHandler {
 
@@ -13,8 +15,36 @@ public class JSONHandler {
         return objectMapper.writeValueAsString(message);
     }
 
+    public static byte[] serializeToBytes(Message message) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    /**
+     * Serializes any value, e.g. the payload of a message on its own.
+     */
+    public static String serializeValue(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
     public static Message deserialize(String messageString) throws JsonProcessingException {
-        return objectMapper.readValue(messageString, Message.class);
+        return toTypedPayload(objectMapper.readValue(messageString, Message.class));
+    }
+
+    public static Message deserialize(byte[] messageBytes) throws IOException {
+        return toTypedPayload(objectMapper.readValue(messageBytes, Message.class));
+    }
+
+    /**
+     * Jackson reads an untyped payload as maps and lists, convert it to the class of the payload schema of the message type.
+     */
+    private static Message toTypedPayload(Message message) {
+        if (message.getType() != null && message.getPayload() != null) {
+            PayloadSchema schema = message.getType().getPayloadSchema();
+            if (schema != PayloadSchema.EMPTY && !schema.getPayloadClass().isInstance(message.getPayload())) {
+                message.setPayload(objectMapper.convertValue(message.getPayload(), schema.getPayloadClass()));
+            }
+        }
+        return message;
     }
 
 }
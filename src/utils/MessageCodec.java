@@ -0,0 +1,18 @@
+package utils;
+
+import props.Message;
+
+import java.io.IOException;
+
+/**
+ * Turns messages into bytes for the broker and back. The content type is sent along with every message so the receiver
+ * can pick the matching codec.
+ */
+public interface MessageCodec {
+
+    String getContentType();
+
+    byte[] encode(Message message) throws IOException;
+
+    Message decode(byte[] body) throws IOException;
+}
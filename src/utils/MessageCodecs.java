@@ -0,0 +1,36 @@
+package utils;
+
+public class MessageCodecs {
+    /**
+     * System property selecting the codec used for sending: "binary" (default) or "json".
+     */
+    public static final String CODEC_PROPERTY = "booking.codec";
+    private static final MessageCodec JSON = new JSONCodec();
+    private static final MessageCodec BINARY = new BinaryCodec();
+    private static final MessageCodec DEFAULT = "json".equalsIgnoreCase(System.getProperty(CODEC_PROPERTY)) ? JSON : BINARY;
+
+    /**
+     * Returns the codec used for sending messages.
+     */
+    public static MessageCodec getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the codec for the content type of a received message. Messages without a content type are read as JSON,
+     * which is what senders without a codec produce.
+     *
+     * @param contentType The content type of the message, may be null.
+     * @return The matching codec.
+     * @throws IllegalArgumentException If the content type is not supported.
+     */
+    public static MessageCodec forContentType(String contentType) {
+        if (contentType == null || JSONCodec.CONTENT_TYPE.equals(contentType)) {
+            return JSON;
+        }
+        if (BinaryCodec.CONTENT_TYPE.equals(contentType)) {
+            return BINARY;
+        }
+        throw new IllegalArgumentException("Unsupported content type: " + contentType);
+    }
+}